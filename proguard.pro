@@ -8,6 +8,8 @@
 -dontwarn org.osgi.**
 -dontwarn org.apache.**
 -dontwarn cpw.mods.modlauncher.**
+# Flight Recorder is optional at runtime, and missing from Java 8 before 8u262.
+-dontwarn jdk.jfr.**
 
 
 # Keep - Applications. Keep all application classes, along with their 'main'
@@ -38,3 +40,9 @@
 -keepclassmembers public class net.minecraftforge.** {
     *;
 }
+
+# Keep - Flight Recorder events. JFR reads their names and labels from annotations, and their fields reflectively.
+-keepattributes *Annotation*
+-keep class net.minecraftforge.srg2source.util.jfr.*Event {
+    *;
+}
@@ -58,7 +58,9 @@ public class ConsoleTool
 
     private static enum Task {
         APPLY(RangeApplyMain::main),
+        DELTA(RangeDeltaMain::main),
         EXTRACT(RangeExtractMain::main),
+        PIPELINE(RangePipelineMain::main),
         SORT(RangeSortMain::main);
 
         private Consumer<String[]> task;
@@ -9,6 +9,9 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import net.minecraftforge.srg2source.api.RangeApplierBuilder;
+import net.minecraftforge.srg2source.util.io.AsyncOutputSupplier;
+import net.minecraftforge.srg2source.util.io.ConfLogger;
+import net.minecraftforge.srg2source.util.io.ZipOutputSupplier;
 
 public class RangeApplyMain
 {
@@ -22,6 +25,13 @@ public class RangeApplyMain
         OptionSpec<File> excArg = parser.acceptsAll(a("exc", "excFiles")).withRequiredArg().ofType(File.class);
         OptionSpec<File> outArg = parser.acceptsAll(a("out", "output", "outDir")).withRequiredArg().ofType(File.class).required();
         OptionSpec<Boolean> importArg = parser.acceptsAll(a("keepImports")).withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<File> storeArg = parser.acceptsAll(a("store", "outputStore")).withRequiredArg().ofType(File.class);
+        OptionSpec<Integer> asyncArg = parser.acceptsAll(a("asyncOutput")).withOptionalArg().ofType(Integer.class).defaultsTo(AsyncOutputSupplier.DEFAULT_CAPACITY);
+        OptionSpec<Integer> reproducibleArg = parser.acceptsAll(a("reproducible")).withOptionalArg().ofType(Integer.class).defaultsTo(ZipOutputSupplier.DEFAULT_WINDOW);
+        OptionSpec<ConfLogger.Level> logLevelArg = parser.acceptsAll(a("logLevel")).withRequiredArg().ofType(ConfLogger.Level.class).defaultsTo(ConfLogger.Level.DEBUG);
+        OptionSpec<?> asyncLogArg = parser.acceptsAll(a("asyncLog"));
+        OptionSpec<?> verifyArg = parser.acceptsAll(a("verify"));
+        OptionSpec<String> onlyArg = parser.acceptsAll(a("only")).withRequiredArg().ofType(String.class);
         //OptionSpec<Boolean> annArg = parser.acceptsAll(a("annotate")).withOptionalArg().ofType(Boolean.class).defaultsTo(false);
 
         //Old stuff, we should kill off
@@ -40,17 +50,35 @@ public class RangeApplyMain
             File range = options.valueOf(rangeArg);
             File output = options.valueOf(outArg);
             File lvRange = options.valueOf(lvRangeArg);
+            File store = options.valueOf(storeArg);
             boolean keepImports = options.has(importArg) && options.valueOf(importArg);
+            int asyncQueue = options.has(asyncArg) ? options.valueOf(asyncArg) : 0;
+            int reproducible = options.has(reproducibleArg) ? options.valueOf(reproducibleArg) : 0;
 
             System.out.println("Range:   " + range);
             System.out.println("Output:  " + output);
             System.out.println("LVRange: " + lvRange);
+            System.out.println("Store:   " + store);
             System.out.println("Imports: " + keepImports);
+            System.out.println("Async:   " + asyncQueue);
+            System.out.println("Reproducible: " + reproducible);
+            System.out.println("Log Level: " + options.valueOf(logLevelArg));
+            System.out.println("Verify:  " + options.has(verifyArg));
 
             RangeApplierBuilder builder = new RangeApplierBuilder()
                 .range(range)
                 .output(output)
-                .lvrange(lvRange);
+                .lvrange(lvRange)
+                .outputStore(store)
+                .asyncOutput(asyncQueue)
+                .reproducible(reproducible)
+                .logLevel(options.valueOf(logLevelArg));
+
+            if (options.has(asyncLogArg))
+                builder.asyncLogging();
+
+            if (options.has(verifyArg))
+                builder.verify();
 
             if (options.has(mappingArg))
             {
@@ -73,6 +101,11 @@ public class RangeApplyMain
                 });
             }
 
+            options.valuesOf(onlyArg).forEach(v -> {
+                System.out.println("Only:    " + v);
+                builder.onlyFile(v);
+            });
+
             if (keepImports)
                 builder.keepImports();
             else
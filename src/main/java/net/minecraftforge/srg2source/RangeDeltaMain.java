@@ -0,0 +1,55 @@
+package net.minecraftforge.srg2source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import net.minecraftforge.srg2source.rangeapplier.RangeMapDelta;
+
+/**
+ * Creates a range map delta with --base and --input, or applies one with --base and --delta.
+ */
+public class RangeDeltaMain
+{
+    public static void main(String[] args) throws IOException
+    {
+        OptionParser parser = new OptionParser();
+        OptionSpec<File> baseArg = parser.accepts("base").withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> inputArg = parser.acceptsAll(Arrays.asList("in", "input")).withRequiredArg().ofType(File.class);
+        OptionSpec<File> deltaArg = parser.accepts("delta").withRequiredArg().ofType(File.class);
+        OptionSpec<File> outputArg = parser.acceptsAll(Arrays.asList("out", "output")).withRequiredArg().ofType(File.class).required();
+
+        try
+        {
+            OptionSet options = parser.parse(args);
+            File base = options.valueOf(baseArg);
+            File output = options.valueOf(outputArg);
+
+            if (options.has(inputArg) == options.has(deltaArg))
+                throw new IllegalArgumentException("Exactly one of --input or --delta is required");
+
+            System.out.println("#Base:   " + base);
+            if (options.has(inputArg))
+            {
+                System.out.println("#Input:  " + options.valueOf(inputArg));
+                System.out.println("#Delta:  " + output);
+                RangeMapDelta.diff(base, options.valueOf(inputArg), output);
+            }
+            else
+            {
+                System.out.println("#Delta:  " + options.valueOf(deltaArg));
+                System.out.println("#Output: " + output);
+                RangeMapDelta.apply(base, options.valueOf(deltaArg), output);
+            }
+        }
+        catch (OptionException e)
+        {
+            parser.printHelpOn(System.out);
+            e.printStackTrace();
+        }
+    }
+}
@@ -14,28 +14,32 @@ import joptsimple.OptionSpec;
 import joptsimple.ValueConverter;
 import net.minecraftforge.srg2source.api.RangeExtractorBuilder;
 import net.minecraftforge.srg2source.api.SourceVersion;
+import net.minecraftforge.srg2source.asm.TransformingLauncher;
+import net.minecraftforge.srg2source.util.io.ConfLogger;
 
 public class RangeExtractMain
 {
     /*
      * TODO:
-     *   Support Source Directories/Inputs on the classpath. Which is the sourcepathEntries argument in
-     *   org.eclipse.jdt.core.dom.ASTParser.setEnvironment(String[], String[], String[], boolean)
-     *   This would need patching to support InputSupplier's
-     *
-     *   Runtime detection of JDT patch, and re launch in TransformingClassloader if not detected.
-     *
      *   Find a way to pass RangeExtractor instance to our JDT hook so we can run multiple batches at once.
      */
 
 
-    public static void main(String[] args) throws IOException
+    public static void main(String[] args) throws Exception
     {
         OptionParser parser = new OptionParser();
         OptionSpec<File> libArg = parser.acceptsAll(Arrays.asList("e", "lib")).withRequiredArg().ofType(File.class);
+        OptionSpec<File> sourcePathArg = parser.acceptsAll(Arrays.asList("sp", "sourcePath")).withRequiredArg().ofType(File.class);
         OptionSpec<File> inputArg = parser.acceptsAll(Arrays.asList("in", "input")).withRequiredArg().ofType(File.class).required();
         OptionSpec<File> outputArg = parser.acceptsAll(Arrays.asList("out", "output")).withRequiredArg().ofType(File.class).required();
         OptionSpec<Boolean> batch = parser.accepts("batch").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<String> filterPrefixArg = parser.accepts("filterPrefix").withRequiredArg().ofType(String.class);
+        OptionSpec<File> filterSrgArg = parser.accepts("filterSrg").withRequiredArg().ofType(File.class);
+        OptionSpec<File> libCacheArg = parser.accepts("libCache").withRequiredArg().ofType(File.class);
+        OptionSpec<File> metricsArg = parser.accepts("metrics").withRequiredArg().ofType(File.class);
+        OptionSpec<ConfLogger.Level> logLevelArg = parser.accepts("logLevel").withRequiredArg().ofType(ConfLogger.Level.class).defaultsTo(ConfLogger.Level.DEBUG);
+        OptionSpec<?> asyncLogArg = parser.accepts("asyncLog");
+        OptionSpec<Boolean> newCodeArg = parser.accepts("newCode").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
         OptionSpec<SourceVersion> jversionArg = parser.acceptsAll(Arrays.asList("sc", "source-compatibility")).withRequiredArg().ofType(SourceVersion.class).defaultsTo(SourceVersion.JAVA_1_8)
             .withValuesConvertedBy(new ValueConverter<SourceVersion>() {
                 @Override
@@ -66,14 +70,26 @@ public class RangeExtractMain
         try
         {
             OptionSet options = parser.parse(args);
+
+            // Batching needs JDT patched, so if it isn't, run ourselves again in a classloader that patches it.
+            if (options.valueOf(batch) && TransformingLauncher.shouldRelaunch() && TransformingLauncher.relaunch(RangeExtractMain.class.getName(), args))
+                return;
+
             System.out.println("Compat: " + options.valueOf(jversionArg));
             System.out.println("Output: " + options.valueOf(outputArg));
             System.out.println("Batch:  " + options.valueOf(batch));
+            boolean newCode = options.has(newCodeArg) && options.valueOf(newCodeArg);
+            System.out.println("NewCode: " + newCode);
 
             RangeExtractorBuilder builder = new RangeExtractorBuilder()
                 .sourceCompatibility(options.valueOf(jversionArg))
                 .output(options.valueOf(outputArg))
-                .batch(options.valueOf(batch));
+                .batch(options.valueOf(batch))
+                .newCodeRanges(newCode)
+                .logLevel(options.valueOf(logLevelArg));
+
+            if (options.has(asyncLogArg))
+                builder.asyncLogging();
 
             if (options.has(libArg))
             {
@@ -83,6 +99,33 @@ public class RangeExtractMain
                 });
             }
 
+            if (options.has(libCacheArg))
+            {
+                System.out.println("LibCache: " + options.valueOf(libCacheArg));
+                builder.libraryCache(options.valueOf(libCacheArg));
+            }
+
+            if (options.has(metricsArg))
+            {
+                System.out.println("Metrics: " + options.valueOf(metricsArg));
+                builder.metrics(options.valueOf(metricsArg));
+            }
+
+            options.valuesOf(filterPrefixArg).forEach(v -> {
+                System.out.println("Filter: " + v);
+                builder.filterPrefix(v);
+            });
+
+            options.valuesOf(filterSrgArg).forEach(v -> {
+                System.out.println("Filter: " + v);
+                builder.filterSrg(v);
+            });
+
+            options.valuesOf(sourcePathArg).forEach(v -> {
+                System.out.println("Source: " + v);
+                builder.sourcePath(v);
+            });
+
             options.valuesOf(inputArg).forEach(v -> {
                 System.out.println("Input:  " + v);
                 builder.input(v);
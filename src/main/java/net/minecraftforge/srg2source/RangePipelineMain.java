@@ -0,0 +1,144 @@
+package net.minecraftforge.srg2source;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import net.minecraftforge.srg2source.api.RangeApplierBuilder;
+import net.minecraftforge.srg2source.api.RangeExtractorBuilder;
+import net.minecraftforge.srg2source.api.RangePipelineBuilder;
+import net.minecraftforge.srg2source.api.SourceVersion;
+import net.minecraftforge.srg2source.asm.TransformingLauncher;
+import net.minecraftforge.srg2source.rangeapplier.RangePipeline;
+import net.minecraftforge.srg2source.util.io.ConfLogger;
+
+/**
+ * Extract and apply in one step, without writing a range map in between unless asked to.
+ */
+public class RangePipelineMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        OptionParser parser = new OptionParser();
+        OptionSpec<?> helpArg = parser.acceptsAll(a("h", "help")).forHelp();
+        OptionSpec<File> inputArg = parser.acceptsAll(a("in", "input", "srcRoot")).withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> libArg = parser.acceptsAll(a("e", "lib")).withRequiredArg().ofType(File.class);
+        OptionSpec<File> sourcePathArg = parser.acceptsAll(a("sp", "sourcePath")).withRequiredArg().ofType(File.class);
+        OptionSpec<File> libCacheArg = parser.accepts("libCache").withRequiredArg().ofType(File.class);
+        OptionSpec<File> mappingArg = parser.acceptsAll(a("map", "srg", "srgFiles")).withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> excArg = parser.acceptsAll(a("exc", "excFiles")).withRequiredArg().ofType(File.class);
+        OptionSpec<File> outArg = parser.acceptsAll(a("out", "output", "outDir")).withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> rangeArg = parser.acceptsAll(a("rm", "range", "rangeOut")).withRequiredArg().ofType(File.class);
+        OptionSpec<String> jversionArg = parser.acceptsAll(a("sc", "source-compatibility")).withRequiredArg().ofType(String.class).defaultsTo(SourceVersion.JAVA_1_8.getSpec());
+        OptionSpec<Boolean> batch = parser.accepts("batch").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<Boolean> newCodeArg = parser.accepts("newCode").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<Boolean> importArg = parser.acceptsAll(a("keepImports")).withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<Integer> queueArg = parser.accepts("queue").withRequiredArg().ofType(Integer.class).defaultsTo(RangePipeline.DEFAULT_QUEUE);
+        OptionSpec<ConfLogger.Level> logLevelArg = parser.acceptsAll(a("logLevel")).withRequiredArg().ofType(ConfLogger.Level.class).defaultsTo(ConfLogger.Level.DEBUG);
+        OptionSpec<?> asyncLogArg = parser.acceptsAll(a("asyncLog"));
+
+        try
+        {
+            OptionSet options = parser.parse(args);
+
+            if (options.has(helpArg)) {
+                parser.printHelpOn(System.out);
+                return;
+            }
+
+            // Batching needs JDT patched, same as RangeExtractMain.
+            if (options.valueOf(batch) && TransformingLauncher.shouldRelaunch() && TransformingLauncher.relaunch(RangePipelineMain.class.getName(), args))
+                return;
+
+            SourceVersion version = SourceVersion.parse(options.valueOf(jversionArg));
+            boolean newCode = options.has(newCodeArg) && options.valueOf(newCodeArg);
+            boolean keepImports = options.has(importArg) && options.valueOf(importArg);
+
+            System.out.println("Compat:  " + version);
+            System.out.println("Output:  " + options.valueOf(outArg));
+            System.out.println("Range:   " + options.valueOf(rangeArg));
+            System.out.println("Batch:   " + options.valueOf(batch));
+            System.out.println("NewCode: " + newCode);
+            System.out.println("Imports: " + keepImports);
+            System.out.println("Queue:   " + options.valueOf(queueArg));
+            System.out.println("Log Level: " + options.valueOf(logLevelArg));
+
+            RangeExtractorBuilder extract = new RangeExtractorBuilder()
+                .sourceCompatibility(version)
+                .batch(options.valueOf(batch))
+                .newCodeRanges(newCode)
+                .logLevel(options.valueOf(logLevelArg));
+
+            RangeApplierBuilder apply = new RangeApplierBuilder()
+                .output(options.valueOf(outArg))
+                .logLevel(options.valueOf(logLevelArg));
+
+            if (options.has(rangeArg))
+                extract.output(options.valueOf(rangeArg));
+
+            if (options.has(asyncLogArg))
+            {
+                extract.asyncLogging();
+                apply.asyncLogging();
+            }
+
+            if (keepImports)
+                apply.keepImports();
+            else
+                apply.trimImports();
+
+            options.valuesOf(libArg).forEach(v -> {
+                System.out.println("Lib:     " + v);
+                extract.library(v);
+            });
+
+            if (options.has(libCacheArg))
+            {
+                System.out.println("LibCache: " + options.valueOf(libCacheArg));
+                extract.libraryCache(options.valueOf(libCacheArg));
+            }
+
+            options.valuesOf(sourcePathArg).forEach(v -> {
+                System.out.println("Source:  " + v);
+                extract.sourcePath(v);
+            });
+
+            // Each side gets its own supplier, the extractor closes its own when done.
+            options.valuesOf(inputArg).forEach(v -> {
+                System.out.println("Input:   " + v);
+                extract.input(v);
+                apply.input(v);
+            });
+
+            options.valuesOf(mappingArg).forEach(v -> {
+                System.out.println("Map:     " + v);
+                apply.srg(v);
+            });
+
+            options.valuesOf(excArg).forEach(v -> {
+                System.out.println("Exc:     " + v);
+                apply.exc(v);
+            });
+
+            new RangePipelineBuilder()
+                .extract(extract)
+                .apply(apply)
+                .queueSize(options.valueOf(queueArg))
+                .build()
+                .run();
+        }
+        catch (OptionException e)
+        {
+            parser.printHelpOn(System.out);
+            e.printStackTrace();
+        }
+    }
+
+    private static List<String> a(String... values) {
+        return Arrays.asList(values);
+    }
+}
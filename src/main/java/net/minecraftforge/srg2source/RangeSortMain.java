@@ -4,11 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.List;
+
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import net.minecraftforge.srg2source.rangeapplier.RangeMap;
+import net.minecraftforge.srg2source.rangeapplier.RangeMapSorter;
 
 public class RangeSortMain
 {
@@ -17,13 +20,36 @@ public class RangeSortMain
         OptionParser parser = new OptionParser();
         OptionSpec<File> inputArg = parser.acceptsAll(Arrays.asList("in", "input")).withRequiredArg().ofType(File.class).required();
         OptionSpec<File> outputArg = parser.acceptsAll(Arrays.asList("out", "output")).withRequiredArg().ofType(File.class);
+        OptionSpec<?> externalArg = parser.accepts("external", "Sort the raw range records on disk instead of in memory, multiple inputs are combined");
+        OptionSpec<?> mergeArg = parser.accepts("merge", "Merge range maps that are already sorted, like the output of --external");
+        OptionSpec<Integer> runSizeArg = parser.accepts("runSize").withRequiredArg().ofType(Integer.class).defaultsTo(RangeMapSorter.DEFAULT_RUN_SIZE);
+        OptionSpec<File> tmpArg = parser.accepts("tmp").withRequiredArg().ofType(File.class);
 
         try
         {
             OptionSet options = parser.parse(args);
-            File input = options.valueOf(inputArg);
             File output = options.valueOf(outputArg);
 
+            if (options.has(externalArg) || options.has(mergeArg))
+            {
+                List<File> inputs = options.valuesOf(inputArg);
+                inputs.forEach(v -> System.out.println("#Input:  " + v));
+                System.out.println("#Output: " + output);
+                if (output == null)
+                    throw new IllegalArgumentException("--external and --merge need an --output");
+
+                RangeMapSorter sorter = new RangeMapSorter(options.valueOf(tmpArg))
+                    .setRunSize(options.valueOf(runSizeArg));
+
+                if (options.has(mergeArg))
+                    sorter.merge(inputs, output);
+                else
+                    sorter.sort(inputs, output);
+                return;
+            }
+
+            File input = options.valueOf(inputArg);
+
             System.out.println("#Input:  " + input);
             System.out.println("#Output: " + output);
 
@@ -8,9 +8,14 @@ import java.util.List;
 import java.util.Locale;
 
 import net.minecraftforge.srg2source.rangeapplier.RangeApplier;
+import net.minecraftforge.srg2source.util.io.AsyncOutputSupplier;
+import net.minecraftforge.srg2source.util.io.AsyncPrintStream;
 import net.minecraftforge.srg2source.util.io.ChainedInputSupplier;
+import net.minecraftforge.srg2source.util.io.ConfLogger;
 import net.minecraftforge.srg2source.util.io.FolderSupplier;
 import net.minecraftforge.srg2source.util.io.InputSupplier;
+import net.minecraftforge.srg2source.util.io.OutputSupplier;
+import net.minecraftforge.srg2source.util.io.StoreOutputSupplier;
 import net.minecraftforge.srg2source.util.io.ZipInputSupplier;
 import net.minecraftforge.srg2source.util.io.ZipOutputSupplier;
 
@@ -18,14 +23,21 @@ public class RangeApplierBuilder
 {
     private PrintStream logStd = System.out;
     private PrintStream logErr = System.err;
+    private ConfLogger.Level logLevel = ConfLogger.Level.DEBUG;
+    private boolean asyncLog = false;
     private List<InputSupplier> inputs = new ArrayList<>();
     private File output = null;
     private File range = null;
+    private List<String> only = new ArrayList<>();
     private List<File> srgs = new ArrayList<>();
     private List<File> excs = new ArrayList<>();
     private boolean keepImports = false;
     private boolean annotate = false;
+    private boolean verify = false;
     private File rangeOld = null;
+    private int asyncQueue = 0;
+    private File store = null;
+    private int reproducible = 0;
 
     public RangeApplierBuilder logger(PrintStream value)
     {
@@ -39,6 +51,24 @@ public class RangeApplierBuilder
         return this;
     }
 
+    /**
+     * Only log messages at or above this level. Defaults to {@link ConfLogger.Level#DEBUG}, which logs everything.
+     */
+    public RangeApplierBuilder logLevel(ConfLogger.Level value)
+    {
+        this.logLevel = value;
+        return this;
+    }
+
+    /**
+     * Print log messages on a background thread, so slow consoles don't hold up processing.
+     */
+    public RangeApplierBuilder asyncLogging()
+    {
+        this.asyncLog = true;
+        return this;
+    }
+
     public RangeApplierBuilder output(File value)
     {
         this.output = value;
@@ -93,6 +123,14 @@ public class RangeApplierBuilder
         return this;
     }
 
+    /**
+     * Only remap this file, as it is named in the range map. Can be called multiple times, everything is remapped if never called.
+     */
+    public RangeApplierBuilder onlyFile(String value) {
+        this.only.add(value);
+        return this;
+    }
+
     public RangeApplierBuilder trimImports() {
         this.keepImports = false;
         return this;
@@ -108,44 +146,121 @@ public class RangeApplierBuilder
         return this;
     }
 
+    /**
+     * Check the whole range map against the sources before writing anything, and fail with every mismatch if it is stale.
+     */
+    public RangeApplierBuilder verify() {
+        this.verify = true;
+        return this;
+    }
+
     public RangeApplierBuilder lvrange(File value) {
         this.rangeOld = value;
         return this;
     }
 
+    /**
+     * Write outputs into a content addressed store, and hard link them into the output folder.
+     * Useful when applying to many output folders that share most of their content. Only works with a folder output.
+     */
+    public RangeApplierBuilder outputStore(File value)
+    {
+        this.store = value;
+        return this;
+    }
+
+    public RangeApplierBuilder asyncOutput()
+    {
+        return asyncOutput(AsyncOutputSupplier.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Write output files on a background thread, buffering at most {@code queueSize} finished files in memory.
+     * A size of zero writes synchronously.
+     */
+    public RangeApplierBuilder asyncOutput(int queueSize)
+    {
+        this.asyncQueue = queueSize;
+        return this;
+    }
+
+    public RangeApplierBuilder reproducible()
+    {
+        return reproducible(ZipOutputSupplier.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Write zip outputs in sorted order with fixed timestamps, so identical inputs give byte for byte identical archives.
+     * {@code window} bounds how many finished entries may wait for an earlier one. Zero disables it.
+     */
+    public RangeApplierBuilder reproducible(int window)
+    {
+        this.reproducible = window;
+        return this;
+    }
+
+    private static boolean isArchive(File value)
+    {
+        String filename = value.getName().toLowerCase(Locale.ENGLISH);
+        return value.isFile() || filename.endsWith(".jar") || filename.endsWith(".zip");
+    }
+
     public RangeApplier build()
+    {
+        return build(true);
+    }
+
+    // The pipeline feeds ranges in directly, so doesn't need a range map.
+    RangeApplier build(boolean needRange)
     {
         if (output == null)
             throw new IllegalStateException("Builder State Exception: Missing Output");
-        if (range == null)
+        if (needRange && range == null)
             throw new IllegalArgumentException("Builder State Exception: Missing Range Map");
+        if (store != null && isArchive(output))
+            throw new IllegalStateException("Builder State Exception: Output store needs a folder output, not: " + output);
 
         RangeApplier ret = new RangeApplier();
-        ret.setLogger(logStd);
+        ret.setLogger(asyncLog ? new AsyncPrintStream(logStd) : logStd, asyncLog);
         ret.setErrorLogger(logErr);
+        ret.setLevel(logLevel);
 
         if (this.inputs.size() == 1)
             ret.setInput(this.inputs.get(0));
         else
             ret.setInput(new ChainedInputSupplier(this.inputs));
 
-        if (output.isDirectory())
-            ret.setOutput(new FolderSupplier(output));
+        OutputSupplier out;
+        if (store != null)
+            out = new StoreOutputSupplier(store, output);
+        else if (output.isDirectory())
+            out = new FolderSupplier(output);
         else {
             try {
-                ret.setOutput(new ZipOutputSupplier(output));
+                ZipOutputSupplier zip = new ZipOutputSupplier(output);
+                if (reproducible > 0)
+                    zip.reproducible(reproducible);
+                out = zip;
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        ret.readRangeMap(range);
+        if (asyncQueue > 0)
+            out = new AsyncOutputSupplier(out, asyncQueue);
+        ret.setOutput(out);
+
+        if (range != null && !only.isEmpty())
+            ret.readRangeMap(range, only);
+        else if (range != null)
+            ret.readRangeMap(range);
 
         srgs.forEach(ret::readSrg);
         excs.forEach(ret::readExc);
 
         ret.annotate(annotate);
         ret.keepImports(keepImports);
+        ret.setVerify(verify);
 
         if (rangeOld != null)
             ret.readLvRangeMap(rangeOld);
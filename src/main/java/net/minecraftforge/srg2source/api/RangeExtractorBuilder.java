@@ -12,8 +12,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import net.minecraftforge.srg2source.ast.OwnerFilter;
 import net.minecraftforge.srg2source.ast.RangeExtractor;
+import net.minecraftforge.srg2source.rangeapplier.SrgContainer;
+import net.minecraftforge.srg2source.util.io.AsyncPrintStream;
 import net.minecraftforge.srg2source.util.io.ChainedInputSupplier;
+import net.minecraftforge.srg2source.util.io.ConfLogger;
 import net.minecraftforge.srg2source.util.io.FolderSupplier;
 import net.minecraftforge.srg2source.util.io.InputSupplier;
 import net.minecraftforge.srg2source.util.io.ZipInputSupplier;
@@ -23,11 +29,21 @@ public class RangeExtractorBuilder
     private SourceVersion sourceVersion = SourceVersion.JAVA_1_8;
     private PrintStream logStd = System.out;
     private PrintStream logErr = System.err;
+    private ConfLogger.Level logLevel = ConfLogger.Level.DEBUG;
+    private boolean asyncLog = false;
     private PrintWriter output = null;
     private boolean batch = true;
     private List<File> libraries = new ArrayList<>();
     private List<InputSupplier> inputs = new ArrayList<>();
+    private List<InputSupplier> sourcePath = new ArrayList<>();
     private File cache = null;
+    private boolean newCode = false;
+    private List<String> filterPrefixes = new ArrayList<>();
+    private List<File> filterSrgs = new ArrayList<>();
+    private boolean metrics = false;
+    private File metricsReport = null;
+    private IProgressMonitor progress = null;
+    private File libraryCache = null;
 
     public RangeExtractorBuilder sourceCompatibility(SourceVersion value)
     {
@@ -47,6 +63,24 @@ public class RangeExtractorBuilder
         return this;
     }
 
+    /**
+     * Only log messages at or above this level. Defaults to {@link ConfLogger.Level#DEBUG}, which logs everything.
+     */
+    public RangeExtractorBuilder logLevel(ConfLogger.Level value)
+    {
+        this.logLevel = value;
+        return this;
+    }
+
+    /**
+     * Print log messages on a background thread, so slow consoles don't hold up processing.
+     */
+    public RangeExtractorBuilder asyncLogging()
+    {
+        this.asyncLog = true;
+        return this;
+    }
+
     public RangeExtractorBuilder output(File value)
     {
         try
@@ -87,6 +121,77 @@ public class RangeExtractorBuilder
         return this;
     }
 
+    public RangeExtractorBuilder newCodeRanges()
+    {
+        return this.newCodeRanges(true);
+    }
+
+    /**
+     * Index local variables inside "// Foo start" / "// Foo end" comment blocks separately, see {@link RangeExtractor#setNewCodeRanges(boolean)}.
+     */
+    public RangeExtractorBuilder newCodeRanges(boolean value)
+    {
+        this.newCode = value;
+        return this;
+    }
+
+    /**
+     * Only emit field, method and parameter records for owners starting with this prefix.
+     * May be combined with {@link #filterSrg(File)}, an owner only needs to match one of them.
+     */
+    public RangeExtractorBuilder filterPrefix(String value)
+    {
+        this.filterPrefixes.add(value);
+        return this;
+    }
+
+    /**
+     * Only emit field and method records for owners that this SRG has entries for. Parameter and local variable
+     * records are kept for every owner, exc and local variable maps may rename them even without an SRG entry.
+     */
+    public RangeExtractorBuilder filterSrg(File value)
+    {
+        this.filterSrgs.add(value);
+        return this;
+    }
+
+    /**
+     * Collect per file and total timings, available from {@link RangeExtractor#getMetrics()} after running.
+     */
+    public RangeExtractorBuilder metrics()
+    {
+        this.metrics = true;
+        return this;
+    }
+
+    /**
+     * Collect metrics and write them to this file as JSON when done.
+     */
+    public RangeExtractorBuilder metrics(File report)
+    {
+        this.metrics = true;
+        this.metricsReport = report;
+        return this;
+    }
+
+    /**
+     * Receives one unit of work per source file, and may cancel the extraction.
+     */
+    public RangeExtractorBuilder progress(IProgressMonitor value)
+    {
+        this.progress = value;
+        return this;
+    }
+
+    /**
+     * Cache stripped copies of the library jars in this directory, which JDT can read much faster than the originals.
+     */
+    public RangeExtractorBuilder libraryCache(File value)
+    {
+        this.libraryCache = value;
+        return this;
+    }
+
     public RangeExtractorBuilder library(File value)
     {
         this.libraries.add(value);
@@ -124,6 +229,33 @@ public class RangeExtractorBuilder
         return this;
     }
 
+    /**
+     * Sources to resolve bindings against without extracting them, a directory, or a zip which is read in place.
+     */
+    public RangeExtractorBuilder sourcePath(File value)
+    {
+        if (value == null || !value.exists())
+            throw new IllegalArgumentException("Invalid source path value: " + value);
+
+        if (value.isDirectory())
+            return sourcePath(new FolderSupplier(value));
+
+        try
+        {
+            return sourcePath(new ZipInputSupplier(value));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public RangeExtractorBuilder sourcePath(InputSupplier value)
+    {
+        this.sourcePath.add(value);
+        return this;
+    }
+
     public RangeExtractorBuilder cache(File value)
     {
         this.cache = value;
@@ -134,15 +266,30 @@ public class RangeExtractorBuilder
     public RangeExtractor build()
     {
         RangeExtractor ret = new RangeExtractor();
-        ret.setLogger(logStd);
+        ret.setLogger(asyncLog ? new AsyncPrintStream(logStd) : logStd, asyncLog);
         ret.setErrorLogger(logErr);
+        ret.setLevel(logLevel);
 
         if (output != null)
             ret.setOutput(output);
         ret.setSourceCompatibility(sourceVersion);
         ret.setBatchASTs(batch);
+        ret.setNewCodeRanges(newCode);
+        ret.setMetrics(metrics);
+        ret.setMetricsReport(metricsReport);
+        ret.setProgressMonitor(progress);
+        ret.setLibraryCache(libraryCache);
+
+        if (!filterPrefixes.isEmpty() || !filterSrgs.isEmpty())
+        {
+            OwnerFilter filter = new OwnerFilter();
+            filterPrefixes.forEach(filter::addPrefix);
+            filterSrgs.forEach(srg -> filter.addSrg(new SrgContainer().readSrg(srg)));
+            ret.setOwnerFilter(filter);
+        }
 
         libraries.forEach(ret::addLibrary);
+        sourcePath.forEach(ret::addSourcePath);
 
         if (this.inputs.size() == 1)
             ret.setInput(this.inputs.get(0));
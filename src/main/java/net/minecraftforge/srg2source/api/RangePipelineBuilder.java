@@ -0,0 +1,47 @@
+package net.minecraftforge.srg2source.api;
+
+import net.minecraftforge.srg2source.rangeapplier.RangePipeline;
+
+/**
+ * Extracts and applies in one go, see {@link RangePipeline}.
+ * The applier does not need a range map, and the extractor's output is optional.
+ */
+public class RangePipelineBuilder
+{
+    private RangeExtractorBuilder extract = null;
+    private RangeApplierBuilder apply = null;
+    private int queueSize = RangePipeline.DEFAULT_QUEUE;
+
+    public RangePipelineBuilder extract(RangeExtractorBuilder value)
+    {
+        this.extract = value;
+        return this;
+    }
+
+    public RangePipelineBuilder apply(RangeApplierBuilder value)
+    {
+        this.apply = value;
+        return this;
+    }
+
+    /**
+     * How many extracted files may wait to be applied, before extraction is held up.
+     */
+    public RangePipelineBuilder queueSize(int value)
+    {
+        this.queueSize = value;
+        return this;
+    }
+
+    public RangePipeline build()
+    {
+        if (extract == null)
+            throw new IllegalStateException("Builder State Exception: Missing Extractor");
+        if (apply == null)
+            throw new IllegalStateException("Builder State Exception: Missing Applier");
+
+        RangePipeline ret = new RangePipeline(extract.build(), apply.build(false));
+        ret.setQueueSize(queueSize);
+        return ret;
+    }
+}
@@ -0,0 +1,105 @@
+package net.minecraftforge.srg2source.asm;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import cpw.mods.modlauncher.api.ITransformer;
+import cpw.mods.modlauncher.api.ITransformerVotingContext;
+import cpw.mods.modlauncher.api.TransformerVoteResult;
+import net.minecraftforge.srg2source.ast.SupplierClasspath;
+
+/**
+ * Gives {@link SupplierClasspath} the first shot at every classpath and source path entry JDT creates, so
+ * InputSuppliers can be used as source path entries. Everything else falls through to JDT's own code.
+ */
+public class FileSystemTransformer implements ITransformer<ClassNode> {
+    public static final String GET_CLASSPATH = "getClasspath(Ljava/lang/String;Ljava/lang/String;ZLorg/eclipse/jdt/internal/compiler/env/AccessRuleSet;Ljava/lang/String;Ljava/util/Map;Ljava/lang/String;)Lorg/eclipse/jdt/internal/compiler/batch/FileSystem$Classpath;";
+    private static final String CLASSPATH = "org/eclipse/jdt/internal/compiler/batch/FileSystem$Classpath";
+    private static final String HOOK_OWNER = Type.getInternalName(SupplierClasspath.class);
+
+    @Override
+    public ClassNode transform(ClassNode input, ITransformerVotingContext context) {
+        System.out.println("Tansforming: " + input.name);
+        patch(input);
+        System.out.println("Patched " + input.name);
+        return input;
+    }
+
+    /**
+     * Inserts, at the start of getClasspath:
+     *   Classpath ret = SupplierClasspath.getClasspath(<same arguments>);
+     *   if (ret != null) return ret;
+     */
+    public static void patch(ClassNode input) {
+        MethodNode method = input.methods.stream().filter(e -> GET_CLASSPATH.equals(e.name + e.desc)).findFirst().orElse(null);
+        if (method == null)
+            throw new IllegalStateException("Could not find getClasspath target on " + input.name + " JDT Mismatch?: " + GET_CLASSPATH);
+
+        Type[] args = Type.getArgumentTypes(method.desc);
+        InsnList list = new InsnList();
+        for (int x = 0, idx = 0; x < args.length; idx += args[x++].getSize())
+            list.add(new VarInsnNode(args[x].getOpcode(Opcodes.ILOAD), idx));
+        list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, HOOK_OWNER, method.name, method.desc, false));
+
+        LabelNode fallthrough = new LabelNode();
+        list.add(new InsnNode(Opcodes.DUP));
+        list.add(new JumpInsnNode(Opcodes.IFNULL, fallthrough));
+        list.add(new InsnNode(Opcodes.ARETURN));
+        list.add(fallthrough);
+        list.add(getFrame(method, args));
+        list.add(new InsnNode(Opcodes.POP));
+
+        method.instructions.insert(list);
+        method.maxStack = Math.max(method.maxStack, args.length + 1);
+    }
+
+    // Match whatever the reader gave us, expanded frames can't be mixed with compressed ones.
+    private static FrameNode getFrame(MethodNode method, Type[] args) {
+        boolean expanded = false;
+        for (int x = 0; x < method.instructions.size(); x++) {
+            if (method.instructions.get(x) instanceof FrameNode) {
+                expanded = ((FrameNode)method.instructions.get(x)).type == Opcodes.F_NEW;
+                break;
+            }
+        }
+
+        if (!expanded)
+            return new FrameNode(Opcodes.F_SAME1, 0, null, 1, new Object[] { CLASSPATH });
+
+        Object[] locals = new Object[args.length];
+        for (int x = 0; x < args.length; x++) {
+            switch (args[x].getSort()) {
+                case Type.OBJECT: locals[x] = args[x].getInternalName(); break;
+                case Type.ARRAY:  locals[x] = args[x].getDescriptor(); break;
+                case Type.LONG:   locals[x] = Opcodes.LONG; break;
+                case Type.DOUBLE: locals[x] = Opcodes.DOUBLE; break;
+                case Type.FLOAT:  locals[x] = Opcodes.FLOAT; break;
+                default:          locals[x] = Opcodes.INTEGER; break;
+            }
+        }
+        return new FrameNode(Opcodes.F_NEW, locals.length, locals, 1, new Object[] { CLASSPATH });
+    }
+
+    @Override
+    public TransformerVoteResult castVote(ITransformerVotingContext context) {
+        return TransformerVoteResult.YES;
+    }
+
+    @Override
+    public Set<Target> targets() {
+        return Collections.singleton(Target.targetClass("org.eclipse.jdt.internal.compiler.batch.FileSystem"));
+    }
+
+}
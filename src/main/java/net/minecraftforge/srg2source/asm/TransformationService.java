@@ -32,7 +32,7 @@ public class TransformationService implements ITransformationService {
     @SuppressWarnings("rawtypes")
     @Override
     public List<ITransformer> transformers() {
-        return Arrays.asList(new CompilationUnitResolverTransfomer(), new RangeExtractorTransformer());
+        return Arrays.asList(new CompilationUnitResolverTransfomer(), new FileSystemTransformer(), new RangeExtractorTransformer());
     }
 
 }
@@ -0,0 +1,103 @@
+package net.minecraftforge.srg2source.asm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTParser;
+
+import cpw.mods.modlauncher.LaunchPluginHandler;
+import cpw.mods.modlauncher.TransformStore;
+import cpw.mods.modlauncher.TransformationServiceDecorator;
+import cpw.mods.modlauncher.TransformingClassLoader;
+import cpw.mods.modlauncher.api.ITransformationService;
+import net.minecraftforge.srg2source.ast.RangeExtractor;
+
+/**
+ * Runs a main class again inside a {@link TransformingClassLoader} with our {@link TransformationService}, so JDT
+ * and {@link RangeExtractor} get patched and batched extraction works without the pre-patched shadow jar.
+ *
+ * The {@code srg2source.relaunched} system property is set before calling into the new loader, so the relaunched
+ * main doesn't try again. Set {@code srg2source.relaunch} to false to disable relaunching.
+ */
+public class TransformingLauncher
+{
+    private static final String RELAUNCHED = "srg2source.relaunched";
+    private static final String ENABLED = "srg2source.relaunch";
+
+    /**
+     * Whether the caller should try to relaunch: The classes aren't patched yet, we haven't already tried, and it's not disabled.
+     */
+    public static boolean shouldRelaunch()
+    {
+        return !RangeExtractor.hasBeenASMPatched() && !Boolean.getBoolean(RELAUNCHED) && Boolean.parseBoolean(System.getProperty(ENABLED, "true"));
+    }
+
+    /**
+     * Invokes {@code main(String[])} on the named class, loaded through a transforming classloader.
+     * Returns false, having done nothing, if the loader could not be set up. In that case the caller should just carry on unpatched.
+     * Anything thrown by the main method itself is passed on.
+     */
+    public static boolean relaunch(String mainClass, String[] args) throws Exception
+    {
+        Method main;
+        try
+        {
+            Set<Path> targets = new LinkedHashSet<>();
+            targets.add(getRoot(ASTParser.class)); // CompilationUnitResolver isn't public, but lives next to this.
+            targets.add(getRoot(RangeExtractor.class));
+            targets.add(getRoot(Class.forName(mainClass, false, TransformingLauncher.class.getClassLoader())));
+
+            TransformStore store = new TransformStore();
+            Constructor<TransformationServiceDecorator> ctr = TransformationServiceDecorator.class.getDeclaredConstructor(ITransformationService.class);
+            ctr.setAccessible(true);
+            ctr.newInstance(new TransformationService()).gatherTransformers(store);
+
+            TransformingClassLoader loader = new TransformingClassLoader(store, new LaunchPluginHandler(), targets.toArray(new Path[targets.size()]));
+            main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+        }
+        catch (Exception | LinkageError e)
+        {
+            System.out.println("Could not relaunch in a transforming classloader, batched extraction will be unavailable: " + e);
+            return false;
+        }
+
+        System.setProperty(RELAUNCHED, "true");
+        Thread thread = Thread.currentThread();
+        ClassLoader old = thread.getContextClassLoader();
+        thread.setContextClassLoader(main.getDeclaringClass().getClassLoader());
+        try
+        {
+            main.invoke(null, (Object)args);
+        }
+        catch (InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+        finally
+        {
+            thread.setContextClassLoader(old);
+            System.clearProperty(RELAUNCHED);
+        }
+        return true;
+    }
+
+    private static Path getRoot(Class<?> cls) throws URISyntaxException
+    {
+        CodeSource source = cls.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null)
+            throw new IllegalStateException("Could not find the classpath root of " + cls.getName());
+        return Paths.get(source.getLocation().toURI());
+    }
+}
@@ -0,0 +1,116 @@
+package net.minecraftforge.srg2source.ast;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * Remembers the results of expensive binding lookups and formatting, keyed by {@link org.eclipse.jdt.core.dom.IBinding#getKey() binding key},
+ * so every reference to the same symbol after the first is a map lookup.
+ *
+ * Binding keys are only meaningful within a single parser environment, so a cache must not outlive
+ * the batch of compilation units it was created for. Not thread safe, JDT hands us units one at a time anyway.
+ *
+ * Only strings are kept, never the bindings themselves. A binding holds on to its resolver, and through it the
+ * AST and compiler scope of its unit, so caching one would keep every unit of the batch in memory until it ends.
+ */
+public class BindingCache
+{
+    private final Map<String, ResolvedMethod> overrides = new HashMap<>();
+    private final Map<String, Set<String>> declared = new HashMap<>();
+    private final Map<String, String> signatures = new HashMap<>();
+    private final Map<String, String> erasures = new HashMap<>();
+
+    /**
+     * @return The cached root declaration for this method, or null if it has not been resolved yet.
+     */
+    public ResolvedMethod getOverride(IMethodBinding method)
+    {
+        String key = method.getKey();
+        return key == null ? null : overrides.get(key);
+    }
+
+    public void putOverride(IMethodBinding method, ResolvedMethod root)
+    {
+        String key = method.getKey();
+        if (key != null)
+            overrides.put(key, root);
+    }
+
+    /**
+     * @return False if this type declares no method with this name, so it can't declare one that is overridden.
+     */
+    public boolean declaresMethod(ITypeBinding type, String name)
+    {
+        String key = type.getKey();
+        Set<String> names = key == null ? null : declared.get(key);
+        if (names == null)
+        {
+            names = new HashSet<>();
+            for (IMethodBinding mtd : type.getDeclaredMethods())
+                names.add(mtd.getName());
+            if (key != null)
+                declared.put(key, names);
+        }
+        return names.contains(name);
+    }
+
+    /**
+     * @return The erased descriptor of this method, as built by {@link MethodSignatureHelper#getSignature(IMethodBinding)}.
+     */
+    public String getSignature(IMethodBinding method)
+    {
+        String key = method.getKey();
+        if (key == null)
+            return MethodSignatureHelper.getSignature(method);
+
+        String ret = signatures.get(key);
+        if (ret == null)
+        {
+            ret = MethodSignatureHelper.getSignature(method);
+            signatures.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * @return The qualified name of this type's erasure.
+     */
+    public String getErasureName(ITypeBinding type)
+    {
+        String key = type.getKey();
+        if (key == null)
+            return type.getErasure().getQualifiedName();
+
+        String ret = erasures.get(key);
+        if (ret == null)
+        {
+            ret = type.getErasure().getQualifiedName();
+            erasures.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * The parts of a method's root declaration that are emitted, kept instead of the binding itself.
+     */
+    public static class ResolvedMethod
+    {
+        final String owner;
+        final String erasure;
+        final String name;
+        final String signature;
+
+        ResolvedMethod(IMethodBinding method, BindingCache cache)
+        {
+            this.owner = method.getDeclaringClass().getQualifiedName();
+            this.erasure = cache.getErasureName(method.getDeclaringClass());
+            this.name = method.getName();
+            this.signature = MethodSignatureHelper.getSignature(method, cache);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package net.minecraftforge.srg2source.ast;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings and counters for a {@link RangeExtractor} run, per file and in total.
+ *
+ * Phases per file are:
+ *   read:  Reading, decoding and hashing the source.
+ *   parse: Parsing and resolving bindings. In batch mode JDT does this before handing us each unit,
+ *          so it is the time JDT spent between our callbacks, and the first file also pays for loading the libraries.
+ *   walk:  Walking the AST, not counting time spent writing the output.
+ *   emit:  Writing range records to the output.
+ * Setup is the time spent creating parsers and loading libraries outside of any file.
+ */
+public class ExtractorMetrics
+{
+    private final List<FileMetrics> files = new ArrayList<>();
+    private long start = -1;
+    private long end = -1;
+    private long setup = 0;
+
+    void begin()
+    {
+        start = System.nanoTime();
+    }
+
+    void end()
+    {
+        end = System.nanoTime();
+    }
+
+    void addSetup(long nanos)
+    {
+        setup += nanos;
+    }
+
+    FileMetrics file(String path)
+    {
+        FileMetrics ret = new FileMetrics(path);
+        files.add(ret);
+        return ret;
+    }
+
+    public List<FileMetrics> getFiles()
+    {
+        return Collections.unmodifiableList(files);
+    }
+
+    public long getElapsedNanos()
+    {
+        if (start == -1)
+            return 0;
+        return (end == -1 ? System.nanoTime() : end) - start;
+    }
+
+    public long getSetupNanos()   { return setup; }
+    public long getReadNanos()    { long ret = 0; for (FileMetrics f : files) ret += f.read;    return ret; }
+    public long getParseNanos()   { long ret = 0; for (FileMetrics f : files) ret += f.parse;   return ret; }
+    public long getWalkNanos()    { long ret = 0; for (FileMetrics f : files) ret += f.walk;    return ret; }
+    public long getEmitNanos()    { long ret = 0; for (FileMetrics f : files) ret += f.emit;    return ret; }
+    public long getBytes()        { long ret = 0; for (FileMetrics f : files) ret += f.bytes;   return ret; }
+    public long getRecords()      { long ret = 0; for (FileMetrics f : files) ret += f.records; return ret; }
+    public int  getCacheHits()    { int  ret = 0; for (FileMetrics f : files) if (f.cached) ret++; return ret; }
+
+    public double getFilesPerSecond()
+    {
+        return perSecond(files.size());
+    }
+
+    public double getRecordsPerSecond()
+    {
+        return perSecond(getRecords());
+    }
+
+    private double perSecond(long count)
+    {
+        long nanos = getElapsedNanos();
+        return nanos == 0 ? 0 : count * 1_000_000_000D / nanos;
+    }
+
+    public void writeJson(Writer out) throws IOException
+    {
+        out.write("{\n");
+        out.write("  \"files\": " + files.size() + ",\n");
+        out.write("  \"cacheHits\": " + getCacheHits() + ",\n");
+        out.write("  \"bytes\": " + getBytes() + ",\n");
+        out.write("  \"records\": " + getRecords() + ",\n");
+        out.write("  \"elapsedMs\": " + millis(getElapsedNanos()) + ",\n");
+        out.write("  \"setupMs\": " + millis(getSetupNanos()) + ",\n");
+        out.write("  \"readMs\": " + millis(getReadNanos()) + ",\n");
+        out.write("  \"parseMs\": " + millis(getParseNanos()) + ",\n");
+        out.write("  \"walkMs\": " + millis(getWalkNanos()) + ",\n");
+        out.write("  \"emitMs\": " + millis(getEmitNanos()) + ",\n");
+        out.write("  \"filesPerSecond\": " + String.format(Locale.ROOT, "%.2f", getFilesPerSecond()) + ",\n");
+        out.write("  \"recordsPerSecond\": " + String.format(Locale.ROOT, "%.2f", getRecordsPerSecond()) + ",\n");
+        out.write("  \"perFile\": [");
+        for (int x = 0; x < files.size(); x++)
+        {
+            FileMetrics f = files.get(x);
+            out.write(x == 0 ? "\n" : ",\n");
+            out.write("    {\"path\": \"" + escape(f.path) + "\", \"cached\": " + f.cached + ", \"bytes\": " + f.bytes + ", \"records\": " + f.records +
+                ", \"readMs\": " + millis(f.read) + ", \"parseMs\": " + millis(f.parse) + ", \"walkMs\": " + millis(f.walk) + ", \"emitMs\": " + millis(f.emit) + "}");
+        }
+        out.write(files.isEmpty() ? "]\n" : "\n  ]\n");
+        out.write("}\n");
+        out.flush();
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000D);
+    }
+
+    private static String escape(String value)
+    {
+        StringBuilder ret = new StringBuilder(value.length());
+        for (int x = 0; x < value.length(); x++)
+        {
+            char c = value.charAt(x);
+            if (c == '"' || c == '\\')
+                ret.append('\\').append(c);
+            else if (c < ' ')
+                ret.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+            else
+                ret.append(c);
+        }
+        return ret.toString();
+    }
+
+    public static class FileMetrics
+    {
+        private final String path;
+        boolean cached = false;
+        long bytes = 0;
+        long records = 0;
+        long read = 0;
+        long parse = 0;
+        long walk = 0;
+        long emit = 0;
+
+        FileMetrics(String path)
+        {
+            this.path = path;
+        }
+
+        public String getPath()      { return path;    }
+        public boolean isCached()    { return cached;  }
+        public long getBytes()       { return bytes;   }
+        public long getRecords()     { return records; }
+        public long getReadNanos()   { return read;    }
+        public long getParseNanos()  { return parse;   }
+        public long getWalkNanos()   { return walk;    }
+        public long getEmitNanos()   { return emit;    }
+    }
+}
@@ -0,0 +1,165 @@
+package net.minecraftforge.srg2source.ast;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import net.minecraftforge.srg2source.util.Util;
+
+/**
+ * Persistent cache of library jars stripped down to what JDT needs to resolve bindings against them.
+ *
+ * Only class files are kept, without method bodies or debug info, so JDT has far fewer and smaller entries to go
+ * through. Signatures, generics, annotations and inner class attributes are left alone. Stripped jars are named
+ * after the SHA-1 of the original, so a changed library is never served stale, and can be shared between runs
+ * and projects.
+ *
+ * Hashing a whole jar every run would cost as much I/O as JDT reading it, so each library's path, size and
+ * timestamp are remembered along with its hash, and the hash is only computed again when one of those changes.
+ */
+public class LibraryIndex
+{
+    private static final int VERSION = 1; // Bump if what we strip changes, so old entries are ignored.
+
+    private final File cacheDir;
+    private final Map<File, File> resolved = new HashMap<>();
+
+    public LibraryIndex(File cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns the stripped version of this jar, building it if it isn't cached yet.
+     * Falls back to the original if it can not be read, JDT will then report it like it always has.
+     */
+    public File get(File jar)
+    {
+        File ret = resolved.get(jar);
+        if (ret != null)
+            return ret;
+
+        try
+        {
+            File stamp = getStamp(jar);
+            String key = jar.length() + "|" + jar.lastModified() + "|";
+            String hash = readStamp(stamp, key);
+            if (hash == null || !new File(cacheDir, hash + "-v" + VERSION + ".jar").exists())
+            {
+                hash = Util.sha1(jar);
+                writeStamp(stamp, key + hash);
+            }
+
+            File target = new File(cacheDir, hash + "-v" + VERSION + ".jar");
+            if (!target.exists())
+                strip(jar, target);
+            ret = target;
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            ret = jar;
+        }
+
+        resolved.put(jar, ret);
+        return ret;
+    }
+
+    private File getStamp(File jar) throws IOException
+    {
+        return new File(cacheDir, "stamps/" + Util.md5(jar.getCanonicalPath(), StandardCharsets.UTF_8) + ".txt");
+    }
+
+    // The hash from the last time this library was seen, if it still has the same size and timestamp.
+    private static String readStamp(File stamp, String key)
+    {
+        try
+        {
+            String line = new String(Files.readAllBytes(stamp.toPath()), StandardCharsets.UTF_8).trim();
+            return line.startsWith(key) ? line.substring(key.length()) : null;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private static void writeStamp(File stamp, String value)
+    {
+        try
+        {
+            stamp.getParentFile().mkdirs();
+            Files.write(stamp.toPath(), value.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            // Just means hashing it again next time.
+        }
+    }
+
+    private void strip(File jar, File target) throws IOException
+    {
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+
+        // Write to a temp file first, so concurrent or interrupted runs never see half a jar.
+        File tmp = File.createTempFile(target.getName(), ".tmp", cacheDir);
+        try
+        {
+            try (ZipFile zip = new ZipFile(jar);
+                 ZipOutputStream out = new ZipOutputStream(new FileOutputStream(tmp)))
+            {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements())
+                {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/"))
+                        continue;
+
+                    byte[] data;
+                    try (InputStream in = zip.getInputStream(entry))
+                    {
+                        data = Util.readStream(in);
+                    }
+
+                    out.putNextEntry(new ZipEntry(entry.getName()));
+                    out.write(strip(data));
+                    out.closeEntry();
+                }
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    private static byte[] strip(byte[] data)
+    {
+        try
+        {
+            ClassReader reader = new ClassReader(data);
+            ClassWriter writer = new ClassWriter(0);
+            reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return writer.toByteArray();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return data; // Newer class file than ASM knows about, JDT may still be able to read it.
+        }
+    }
+}
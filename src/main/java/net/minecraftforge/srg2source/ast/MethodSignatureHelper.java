@@ -36,6 +36,15 @@ public class MethodSignatureHelper
         return buf.toString();
     }
     
+    /**
+     * Same as {@link #getSignature(IMethodBinding)}, but looked up in the cache first when one is given.
+     * The cache only keeps the descriptor, keyed by the binding's key, so the binding itself can be collected.
+     */
+    public static String getSignature(IMethodBinding method, BindingCache cache)
+    {
+        return cache == null ? getSignature(method) : cache.getSignature(method);
+    }
+
     public static String getTypeSignature(ITypeBinding type)
     {
         String ret = type.getErasure().getBinaryName().replace('.', '/');
@@ -0,0 +1,90 @@
+package net.minecraftforge.srg2source.ast;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.minecraftforge.srg2source.rangeapplier.MethodData;
+import net.minecraftforge.srg2source.rangeapplier.SrgContainer;
+
+/**
+ * Decides which owners can ever be remapped, so the extractor can skip field, method and parameter records
+ * for everything else, such as {@code java.*} and library classes.
+ *
+ * Owners are matched by their source qualified name, so inner classes are separated with '.' just like packages.
+ * Class references are never filtered, the applier needs every one of them to rebuild the imports.
+ *
+ * Owners taken from an SRG only filter fields and methods. Parameters and locals are renamed from exc and local
+ * variable maps, which can cover owners the SRG has no entry for, so once an SRG is added they are always kept.
+ */
+public class OwnerFilter
+{
+    private final Set<String> owners = new HashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private boolean keepLocals = false;
+
+    /**
+     * Accepts every owner that starts with this prefix, like "net.minecraft." or "net/minecraft/".
+     */
+    public OwnerFilter addPrefix(String value)
+    {
+        prefixes.add(toSourceName(value));
+        return this;
+    }
+
+    public OwnerFilter addOwner(String value)
+    {
+        owners.add(toSourceName(value));
+        return this;
+    }
+
+    /**
+     * Accepts every class that the SRG has a class, field or method entry for.
+     */
+    public OwnerFilter addSrg(SrgContainer srg)
+    {
+        srg.classMap.keySet().forEach(this::addOwner);
+        srg.fieldMap.keySet().forEach(this::addMemberOwner);
+        for (MethodData method : srg.methodMap.keySet())
+            addMemberOwner(method.name);
+        keepLocals = true;
+        return this;
+    }
+
+    private void addMemberOwner(String member)
+    {
+        int idx = member.lastIndexOf('/');
+        if (idx > 0)
+            addOwner(member.substring(0, idx));
+    }
+
+    public boolean canRemap(String owner)
+    {
+        if (owner == null || owner.isEmpty())
+            return true; // Unknown, better safe than sorry.
+        if (owner.indexOf('$') != -1)
+            owner = toSourceName(owner); // Anonymous classes are printed with their binary name.
+        if (owners.contains(owner))
+            return true;
+        for (String prefix : prefixes)
+        {
+            if (owner.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #canRemap(String)}, for parameter and local variable records.
+     */
+    public boolean canRemapLocals(String owner)
+    {
+        return keepLocals || canRemap(owner);
+    }
+
+    private static String toSourceName(String name)
+    {
+        return name.replace('/', '.').replace('$', '.');
+    }
+}
@@ -1,29 +1,40 @@
 package net.minecraftforge.srg2source.ast;
 
 import java.io.BufferedReader;
-import java.io.CharArrayWriter;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import net.minecraftforge.srg2source.api.SourceVersion;
+import net.minecraftforge.srg2source.rangeapplier.RangeMap;
 import net.minecraftforge.srg2source.util.Util;
 import net.minecraftforge.srg2source.util.io.ConfLogger;
 import net.minecraftforge.srg2source.util.io.InputSupplier;
+import net.minecraftforge.srg2source.util.jfr.JfrEvents;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.Comment;
@@ -40,6 +51,9 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
     private boolean enableBatchedASTs = true;
     private final Set<File> libs = new LinkedHashSet<File>();
     private String[] libArray = null; //A cache of libs, so we don't have to re-build it over and over.
+    private LibraryIndex libraryIndex = null;
+    private final List<InputSupplier> sourcePath = new ArrayList<>();
+    private String[] sourceArray = null; // Registered while running, see getSourceArray
 
     private InputSupplier input;
 
@@ -47,6 +61,13 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
     private int cache_hits =0;
 
     private boolean enableNewRanges = false;
+    private OwnerFilter ownerFilter = null;
+    private ExtractorMetrics metrics = null;
+    private File metricsReport = null;
+    private IProgressMonitor monitor = null;
+    private BiConsumer<String, RangeMap> rangeConsumer = null;
+    private Consumer<List<String>> fileListConsumer = null;
+    private long lastUnit = 0;
 
     public RangeExtractor(){}
 
@@ -65,6 +86,81 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
         this.enableBatchedASTs = value;
     }
 
+    /**
+     * Gives local variables declared between "// Foo start" and "// Foo end" comments their own index range,
+     * so patches that add variables don't shift the indexes of the original ones.
+     */
+    public void setNewCodeRanges(boolean value)
+    {
+        this.enableNewRanges = value;
+    }
+
+    /**
+     * Only emit field, method and parameter records for owners this filter accepts, null to emit everything.
+     */
+    public void setOwnerFilter(OwnerFilter value)
+    {
+        this.ownerFilter = value;
+    }
+
+    /**
+     * Collect per file and total timings while running, see {@link #getMetrics()}.
+     */
+    public void setMetrics(boolean value)
+    {
+        this.metrics = value ? new ExtractorMetrics() : null;
+    }
+
+    /**
+     * Collect metrics, and write them to this file as JSON when done.
+     */
+    public void setMetricsReport(File value)
+    {
+        this.metricsReport = value;
+        if (value != null && metrics == null)
+            this.metrics = new ExtractorMetrics();
+    }
+
+    public ExtractorMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * Receives one unit of work per file. Cancelling it stops the extraction after the current file.
+     */
+    public void setProgressMonitor(IProgressMonitor value)
+    {
+        this.monitor = value;
+    }
+
+    /**
+     * Receives the ranges of each file as soon as it is done, so they can be used without writing and reading back
+     * the whole map. The records are added as they are emitted, never formatted as text unless there is a range output.
+     * Called on the extracting thread.
+     */
+    public void setRangeConsumer(BiConsumer<String, RangeMap> value)
+    {
+        this.rangeConsumer = value;
+    }
+
+    /**
+     * Receives the sorted paths of every file that is going to be extracted, before any of them are.
+     */
+    public void setFileListConsumer(Consumer<List<String>> value)
+    {
+        this.fileListConsumer = value;
+    }
+
+    /**
+     * Hand JDT stripped down copies of library jars, kept in this directory between runs. Null to use the jars as they are.
+     */
+    public void setLibraryCache(File value)
+    {
+        this.libraryIndex = value == null ? null : new LibraryIndex(value);
+        this.libArray = null;
+    }
+
     public void addLibrary(File value)
     {
         String fileName = value.getPath().toLowerCase(Locale.ENGLISH);
@@ -79,7 +175,16 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
             libs.add(value);
         }
         else
-            log("Unsupposrted library path: " + value.getAbsolutePath());
+            log(Level.WARN, "Unsupposrted library path: " + value.getAbsolutePath());
+    }
+
+    /**
+     * Sources that are not being extracted, but which bindings may be resolved against.
+     * Anything but a folder on disk needs the ASM patch, see {@link SupplierClasspath}.
+     */
+    public void addSourcePath(InputSupplier value)
+    {
+        this.sourcePath.add(value);
     }
 
     public void setInput(InputSupplier supplier)
@@ -138,6 +243,8 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
         Collections.sort(tmp);
         String[] files = tmp.toArray(new String[tmp.size()]);
         log("Processing " + files.length + " files");
+        if (fileListConsumer != null)
+            fileListConsumer.accept(Collections.unmodifiableList(tmp));
 
         if (files.length == 0)
         {
@@ -146,143 +253,236 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
             return true;
         }
 
-        if (canBatchASTs())
-            return batchGenerate(files);
-        else
-            return legacyGenerate(files);
+        if (metrics != null)
+            metrics.begin();
+
+        boolean ret = canBatchASTs() ? batchGenerate(files) : legacyGenerate(files);
+
+        if (metrics != null)
+        {
+            metrics.end();
+            writeMetrics();
+        }
+        return ret;
+    }
+
+    private void writeMetrics()
+    {
+        if (metricsReport == null)
+            return;
+
+        File parent = metricsReport.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(metricsReport), StandardCharsets.UTF_8))
+        {
+            metrics.writeJson(writer);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace(errorLogger);
+        }
     }
 
     private boolean legacyGenerate(String[] files)
     {
+        IProgressMonitor monitor = this.monitor != null ? this.monitor : new NullProgressMonitor();
+        monitor.beginTask("Extracting ranges", files.length);
         try
         {
-            for (String path : files)
+            // Files from the same directory on disk can share one parser, and with it one environment, so the
+            // libraries are only opened and indexed once. Anything else needs the ASM patch to be read by JDT.
+            int start = 0;
+            while (start < files.length && !monitor.isCanceled())
             {
-                Charset encoding = input.getEncoding(path);
-                if (encoding == null)
-                    encoding = StandardCharsets.UTF_8;
+                String root = input.getRoot(files[start]);
+                int end = start + 1;
+                while (end < files.length && Objects.equals(root, input.getRoot(files[end])))
+                    end++;
 
-                try (InputStream stream = input.getInput(path))
+                String[] group = Arrays.copyOfRange(files, start, end);
+                if (!enableBatchedASTs || !legacyGenerateGroup(root, group, monitor))
                 {
-                    SymbolRangeEmitter emitter = new SymbolRangeEmitter(path, output);
-                    String data = new String(Util.readStream(stream), encoding);
-                    String md5 = Util.md5(data, encoding);
-
-                    log("startProcessing \"" + path + "\" md5: " + md5);
-
-                    FileCache cache = this.file_cache.get(path);
-                    if (cache != null && cache.path.equals(path) && cache.md5.equals(md5))
-                    {
-                        log("Cache Hit!");
-                        this.cache_hits++;
-                        for (String line : cache.lines)
-                            emitter.log(line);
-                    }
-                    else
+                    for (String path : group)
                     {
-                        ASTParser parser = Util.createParser(sourceVersion, input.getRoot(path), getLibArray());
-                        CompilationUnit cu = Util.createUnit(parser, sourceVersion, path, data.toCharArray());
-
-                        if (cu.getProblems() != null && cu.getProblems().length > 0)
-                        {
-                            for (IProblem prob : cu.getProblems())
-                            {
-                                if (prob.isWarning())
-                                    continue;
-                                log("    Compile Error! " + prob.toString());
-                            }
-                        }
-
-                        int[] newCode = getNewCodeRanges(cu, data);
-
-                        SymbolReferenceWalker walker = new SymbolReferenceWalker(emitter, null, newCode);
-                        walker.walk(cu);
+                        if (monitor.isCanceled())
+                            break;
+                        monitor.subTask(path);
+                        legacyGenerateFile(path);
+                        monitor.worked(1);
                     }
-
-                    log("endProcessing \"" + path + "\"");
-                    log("");
                 }
+                start = end;
             }
+
+            if (monitor.isCanceled())
+                log("Extraction cancelled");
         }
         catch (Exception e)
         {
             e.printStackTrace(errorLogger);
         }
+        monitor.done();
 
         cleanup();
         return true;
     }
 
-    private boolean batchGenerate(String[] files)
+    /**
+     * Parses a run of files that share a source root in one go, reading them from disk rather than the input.
+     * Returns false without doing anything if the root isn't a directory holding all of them.
+     */
+    private boolean legacyGenerateGroup(String root, String[] group, IProgressMonitor monitor)
     {
-        if (RangeExtractor.INSTANCE != null)
-            throw new IllegalStateException("Can not do batched processing while another is running!");
-        RangeExtractor.INSTANCE = this;
+        if (group.length < 2 || root == null || root.isEmpty() || !new File(root).isDirectory())
+            return false;
 
-        //TODO: Check org.eclipse.jdt.internal.compiler.batch.FileSystem.getClasspath(String, String, boolean, AccessRuleSet, String, Map<String, String>, String)
-        // That is where it loads sourceDirs as classpath entries. Try and hijack to include InputSuppliers?
-        ASTParser parser = Util.createParser(sourceVersion, getLibArray());
+        String[] paths = new String[group.length];
+        String[] encodings = new String[group.length];
+        Map<String, String> relative = new HashMap<>();
+        for (int x = 0; x < group.length; x++)
+        {
+            File file = new File(root, group[x]);
+            if (!file.isFile())
+                return false;
+            Charset encoding = input.getEncoding(group[x]);
+            paths[x] = file.getAbsolutePath();
+            encodings[x] = (encoding == null ? StandardCharsets.UTF_8 : encoding).name();
+            relative.put(paths[x], group[x]);
+        }
+
+        long time = System.nanoTime();
+        ASTParser parser = Util.createParser(sourceVersion, getLibArray(), getSourceArray(root));
+        BindingCache bindings = new BindingCache();
+        if (metrics != null)
+            metrics.addSetup(System.nanoTime() - time);
 
         FileASTRequestor requestor = new FileASTRequestor()
         {
             @Override
             public void acceptAST(String path, CompilationUnit cu)
             {
-                path = path.replace(File.separatorChar, '/');
+                String rel = relative.get(path);
+                monitor.subTask(rel);
+                acceptUnit(rel, cu, bindings, false);
+                monitor.worked(1);
+                if (monitor.isCanceled())
+                    throw new OperationCanceledException();
+            }
+        };
 
-                Charset encoding = input.getEncoding(path);
-                if (encoding == null)
-                    encoding = StandardCharsets.UTF_8;
+        try
+        {
+            lastUnit = System.nanoTime();
+            parser.createASTs(paths, encodings, new String[0], requestor, null);
+        }
+        catch (OperationCanceledException e)
+        {
+            // Checked by the caller
+        }
+        return true;
+    }
 
-                try (InputStream stream = input.getInput(path)) {
+    private void legacyGenerateFile(String path) throws Exception
+    {
+        Object event = JfrEvents.beginExtractFile();
+        ExtractorMetrics.FileMetrics stats = getFileMetrics(path, event);
+        long time = System.nanoTime();
+
+        // Each file gets its own parser here, and binding keys mean nothing outside of it.
+        BindingCache bindings = new BindingCache();
+        Charset encoding = input.getEncoding(path);
+        if (encoding == null)
+            encoding = StandardCharsets.UTF_8;
+
+        ByteBuffer buf = input.getBuffer(path);
+        if (buf == null)
+            throw new FileNotFoundException("Could not read input: " + path);
+
+        SymbolRangeEmitter emitter = new SymbolRangeEmitter(path, output, bindings, ownerFilter);
+        emitter.setMetrics(stats);
+        RangeMap ranges = rangeConsumer == null ? null : new RangeMap();
+        emitter.setRanges(ranges);
+        int bytes = buf.remaining();
+        char[] chars = Util.decode(buf, encoding);
+        String data = new String(chars);
+        String md5 = Util.md5(data, encoding);
+
+        if (stats != null)
+        {
+            stats.bytes = bytes;
+            stats.read = System.nanoTime() - time;
+        }
 
-                    SymbolRangeEmitter emitter = new SymbolRangeEmitter(path, output);
-                    String data = new String(Util.readStream(stream), encoding).replaceAll("\r", "");
-                    String md5 = Util.md5(data, encoding);
+        log(Level.DEBUG, "startProcessing \"" + path + "\" md5: " + md5);
 
-                    log("startProcessing \"" + path + "\" md5: " + md5);
+        FileCache cache = this.file_cache.get(path);
+        if (cache != null && cache.path.equals(path) && cache.md5.equals(md5))
+        {
+            log(Level.DEBUG, "Cache Hit!");
+            this.cache_hits++;
+            if (stats != null)
+                stats.cached = true;
+            for (String line : cache.lines)
+                emitter.log(line);
+        }
+        else
+        {
+            time = System.nanoTime();
+            ASTParser parser = Util.createParser(sourceVersion, getLibArray(), getSourceArray(input.getRoot(path)));
+            if (metrics != null)
+                metrics.addSetup(System.nanoTime() - time);
 
-                    FileCache cache = RangeExtractor.this.file_cache.get(path);
-                    if (cache != null && cache.path.equals(path) && cache.md5.equals(md5))
-                    {
-                        log("Cache Hit!");
-                        RangeExtractor.this.cache_hits++;
-                        for (String line : cache.lines)
-                            emitter.log(line);
-                    }
-                    else
-                    {
-                        if (cu.getProblems() != null && cu.getProblems().length > 0)
-                        {
-                            for (IProblem prob : cu.getProblems())
-                            {
-                                if (prob.isWarning())
-                                    continue;
-                                log("    Compile Error! " + prob.toString());
-                            }
-                        }
-
-                        int[] newCode = getNewCodeRanges(cu, data);
-
-                        SymbolReferenceWalker walker = new SymbolReferenceWalker(emitter, null, newCode);
-                        walker.walk(cu);
-                    }
+            time = System.nanoTime();
+            CompilationUnit cu = Util.createUnit(parser, sourceVersion, path, chars);
+            if (stats != null)
+                stats.parse = System.nanoTime() - time;
 
-                    log("endProcessing \"" + path + "\"");
-                    log("");
-                } catch (IOException e) {
-                    if (output != null)
-                        e.printStackTrace(output);
-                    else
-                        e.printStackTrace();
+            if (cu.getProblems() != null && cu.getProblems().length > 0)
+            {
+                for (IProblem prob : cu.getProblems())
+                {
+                    if (prob.isWarning())
+                        continue;
+                    log(Level.WARN, "    Compile Error! " + prob.toString());
                 }
             }
-        };
 
-        IProgressMonitor monitor = new NullProgressMonitor()
+            walk(cu, data, emitter, stats);
+        }
+
+        log(Level.DEBUG, "endProcessing \"" + path + "\"");
+        log(Level.DEBUG, "");
+        commitEvent(event, stats);
+        if (ranges != null)
+            rangeConsumer.accept(path, ranges);
+    }
+
+    private boolean batchGenerate(String[] files)
+    {
+        if (RangeExtractor.INSTANCE != null)
+            throw new IllegalStateException("Can not do batched processing while another is running!");
+        RangeExtractor.INSTANCE = this;
+
+        long time = System.nanoTime();
+        ASTParser parser = Util.createParser(sourceVersion, getLibArray(), getSourceArray(null));
+        BindingCache bindings = new BindingCache();
+        if (metrics != null)
+            metrics.addSetup(System.nanoTime() - time);
+
+        FileASTRequestor requestor = new FileASTRequestor()
         {
+            @Override
+            public void acceptAST(String path, CompilationUnit cu)
+            {
+                acceptUnit(path.replace(File.separatorChar, '/'), cu, bindings, true);
+            }
         };
 
+        IProgressMonitor monitor = this.monitor != null ? this.monitor : new NullProgressMonitor();
+
+        lastUnit = System.nanoTime();
         parser.createASTs(files, null, new String[0], requestor, monitor);
 
         cleanup();
@@ -291,8 +491,117 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
         return true;
     }
 
+    private void acceptUnit(String path, CompilationUnit cu, BindingCache bindings, boolean stripCarriageReturns)
+    {
+        // Everything JDT did since we last returned was parsing and resolving for this unit.
+        long time = System.nanoTime();
+        Object event = JfrEvents.beginExtractFile();
+        ExtractorMetrics.FileMetrics stats = getFileMetrics(path, event);
+        if (stats != null)
+            stats.parse = time - lastUnit;
+
+        Charset encoding = input.getEncoding(path);
+        if (encoding == null)
+            encoding = StandardCharsets.UTF_8;
+
+        try {
+            ByteBuffer buf = input.getBuffer(path);
+            if (buf == null)
+                throw new FileNotFoundException("Could not read input: " + path);
+
+            SymbolRangeEmitter emitter = new SymbolRangeEmitter(path, output, bindings, ownerFilter);
+            emitter.setMetrics(stats);
+            RangeMap ranges = rangeConsumer == null ? null : new RangeMap();
+            emitter.setRanges(ranges);
+            int bytes = buf.remaining();
+            String data = new String(Util.decode(buf, encoding));
+            if (stripCarriageReturns && data.indexOf('\r') != -1)
+                data = data.replace("\r", "");
+            String md5 = Util.md5(data, encoding);
+
+            if (stats != null)
+            {
+                stats.bytes = bytes;
+                stats.read = System.nanoTime() - time;
+            }
+
+            log(Level.DEBUG, "startProcessing \"" + path + "\" md5: " + md5);
+
+            FileCache cache = file_cache.get(path);
+            if (cache != null && cache.path.equals(path) && cache.md5.equals(md5))
+            {
+                log(Level.DEBUG, "Cache Hit!");
+                cache_hits++;
+                if (stats != null)
+                    stats.cached = true;
+                for (String line : cache.lines)
+                    emitter.log(line);
+            }
+            else
+            {
+                if (cu.getProblems() != null && cu.getProblems().length > 0)
+                {
+                    for (IProblem prob : cu.getProblems())
+                    {
+                        if (prob.isWarning())
+                            continue;
+                        log(Level.WARN, "    Compile Error! " + prob.toString());
+                    }
+                }
+
+                walk(cu, data, emitter, stats);
+            }
+
+            log(Level.DEBUG, "endProcessing \"" + path + "\"");
+            log(Level.DEBUG, "");
+            commitEvent(event, stats);
+            if (ranges != null)
+                rangeConsumer.accept(path, ranges);
+        } catch (IOException e) {
+            if (output != null)
+                e.printStackTrace(output);
+            else
+                e.printStackTrace();
+        }
+        lastUnit = System.nanoTime();
+    }
+
+    private ExtractorMetrics.FileMetrics getFileMetrics(String path, Object event)
+    {
+        if (metrics != null)
+            return metrics.file(path);
+        return event == null ? null : new ExtractorMetrics.FileMetrics(path); // Flight recorder wants the timings, even if nobody else does.
+    }
+
+    private void commitEvent(Object event, ExtractorMetrics.FileMetrics stats)
+    {
+        if (event != null)
+            JfrEvents.commitExtractFile(event, stats.getPath(), stats.cached, stats.bytes, stats.records, stats.read, stats.parse, stats.walk, stats.emit);
+    }
+
+    private void walk(CompilationUnit cu, String data, SymbolRangeEmitter emitter, ExtractorMetrics.FileMetrics stats)
+    {
+        long time = System.nanoTime();
+        long emit = stats == null ? 0 : stats.emit;
+
+        int[] newCode = getNewCodeRanges(cu, data);
+
+        SymbolReferenceWalker walker = new SymbolReferenceWalker(emitter, null, newCode);
+        walker.walk(cu);
+
+        if (stats != null)
+            stats.walk = System.nanoTime() - time - (stats.emit - emit);
+    }
+
     private void cleanup()
     {
+        if (sourceArray != null)
+        {
+            for (String path : sourceArray)
+                SupplierClasspath.unregister(path);
+            sourceArray = null;
+        }
+
         try
         {
             input.close();
@@ -308,14 +617,17 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
             output.close();
             output = null;
         }
+
+        closeLog();
     }
 
+    // The range output always gets everything, the level only applies to what is echoed to the logger.
     @Override
-    protected void log(String s)
+    protected void log(Level level, String s)
     {
         if (output != null)
             output.println(s);
-        super.log(s);
+        super.log(level, s);
     }
 
     private int[] getNewCodeRanges(CompilationUnit cu, String data)
@@ -324,84 +636,146 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
             return new int[0];
 
         boolean inside = false;
-        ArrayList<Integer> ret = new ArrayList<Integer>();
+        int[] ret = new int[16];
+        int count = 0;
         for (Comment cmt : (List<Comment>) cu.getCommentList())
         {
-            String comment = data.substring(cmt.getStartPosition(), cmt.getStartPosition() + cmt.getLength());
-            if (cmt.isLineComment())
+            int start = cmt.getStartPosition();
+            int end = start + cmt.getLength();
+            boolean line = cmt.isLineComment();
+            if (!line && !cmt.isBlockComment())
+                continue;
+
+            // Line comments are checked as a whole, block comments line by line.
+            int lineStart = start;
+            while (lineStart < end)
             {
-                String[] words = comment.split(" ");
-                if (words.length >= 3)
-                {
-                    // First word is "//",
-                    // Second is "CraftBukkit", "Spigot", "Forge"..,
-                    // Third is "start"/"end"
-                    //Sometimes they miss spaces, so check if the beginning is smoshed
-                    int idx = ((words[0].startsWith("//") && words[0].length() != 2) ? 1 : 2);
-                    String command = words[idx];
-                    if (command.equalsIgnoreCase("start"))
-                    {
-                        ret.add(cmt.getStartPosition());
-                        if (inside)
-                            log("Unmatched newcode start: " + cmt.getStartPosition() + ": " + comment);
-                        inside = true;
-                    }
-                    else if (command.equalsIgnoreCase("end"))
-                    {
-                        ret.add(cmt.getStartPosition());
-                        if (!inside)
-                            log("Unmatched newcode end: " + cmt.getStartPosition() + ": " + comment);
-                        inside = false;
-                    }
-                }
-            }
-            else if (cmt.isBlockComment())
-            {
-                String[] lines = comment.split("\r?\n");
-                for (String line : lines)
+                int lineEnd = line ? end : data.indexOf('\n', lineStart);
+                if (lineEnd == -1 || lineEnd > end)
+                    lineEnd = end;
+
+                int marker = getNewCodeMarker(data, lineStart, lineEnd, line);
+                if (marker != 0)
                 {
-                    String[] words = line.trim().split(" ");
-                    if (words.length >= 3)
-                    {
-                        // First word is "/*",
-                        // Second is "CraftBukkit", "Spigot", "Forge"..,
-                        // Third is "start"/"end"
-                        String command = words[2];
-                        if (command.equalsIgnoreCase("start"))
-                        {
-                            ret.add(cmt.getStartPosition());
-                            if (inside)
-                                log("Unmatched newcode start: " + cmt.getStartPosition() + ": " + comment);
-                            inside = true;
-                        }
-                        else if (command.equalsIgnoreCase("end"))
-                        {
-                            ret.add(cmt.getStartPosition());
-                            if (!inside)
-                                log("Unmatched newcode end: " + cmt.getStartPosition() + ": " + comment);
-                            inside = false;
-                        }
-                    }
+                    if (count == ret.length)
+                        ret = Arrays.copyOf(ret, count * 2);
+                    ret[count++] = start;
+
+                    if (marker > 0 && inside)
+                        log(Level.WARN, "Unmatched newcode start: " + start + ": " + data.substring(start, end));
+                    else if (marker < 0 && !inside)
+                        log(Level.WARN, "Unmatched newcode end: " + start + ": " + data.substring(start, end));
+                    inside = marker > 0;
                 }
+                lineStart = lineEnd + 1;
             }
+        }
 
+        return Arrays.copyOf(ret, count);
+    }
+
+    /**
+     * Looks for a newcode marker such as "// CraftBukkit start" or "/* Spigot end", the first word is the comment opener,
+     * the second is who added the code, and the third is "start" or "end". Words are separated by single spaces, exactly like
+     * {@code String.split(" ")} would, but without allocating anything. Line comments can have the first two words smooshed together.
+     *
+     * @return 1 for a start marker, -1 for an end marker, 0 for anything else
+     */
+    private static int getNewCodeMarker(String data, int start, int end, boolean line)
+    {
+        if (!line)
+        {
+            // Block comment lines are trimmed first
+            while (start < end && data.charAt(start) <= ' ')
+                start++;
+            while (end > start && data.charAt(end - 1) <= ' ')
+                end--;
         }
 
-        int[] r = new int[ret.size()];
-        for (int x = 0; x < ret.size(); x++)
+        int firstLength = -1;
+        int secondStart = -1, secondEnd = -1;
+        int thirdStart = -1, thirdEnd = -1;
+        boolean enough = false; // split drops trailing empty words, so we need a non-empty word at index two or later
+
+        int word = 0;
+        int wordStart = start;
+        for (int x = start; x <= end; x++)
         {
-            r[x] = ret.get(x);
+            if (x != end && data.charAt(x) != ' ')
+                continue;
+
+            if (word == 0)
+                firstLength = x - wordStart;
+            else if (word == 1)
+            {
+                secondStart = wordStart;
+                secondEnd = x;
+            }
+            else if (word == 2)
+            {
+                thirdStart = wordStart;
+                thirdEnd = x;
+            }
+
+            if (word >= 2 && x > wordStart)
+            {
+                enough = true;
+                break;
+            }
+
+            word++;
+            wordStart = x + 1;
         }
-        return r;
+
+        if (!enough)
+            return 0;
+
+        boolean smooshed = line && firstLength != 2; // The first word of a line comment always starts with "//"
+        int commandStart = smooshed ? secondStart : thirdStart;
+        int commandEnd   = smooshed ? secondEnd   : thirdEnd;
+        int length = commandEnd - commandStart;
+
+        if (length == 5 && data.regionMatches(true, commandStart, "start", 0, 5))
+            return 1;
+        if (length == 3 && data.regionMatches(true, commandStart, "end", 0, 3))
+            return -1;
+        return 0;
     }
 
     private String[] getLibArray()
     {
         if (libArray == null)
-            libArray = libs.stream().map(File::getAbsolutePath).toArray(String[]::new);
+            libArray = libs.stream().map(f -> libraryIndex != null && f.isFile() ? libraryIndex.get(f) : f).map(File::getAbsolutePath).toArray(String[]::new);
         return libArray;
     }
 
+    private String[] getSourceArray(String root)
+    {
+        if (sourceArray == null)
+        {
+            List<String> ret = new ArrayList<>();
+            for (InputSupplier supplier : sourcePath)
+            {
+                String dir = supplier.getRoot("");
+                if (hasBeenASMPatched())
+                    ret.add(SupplierClasspath.register(supplier));
+                else if (dir != null && new File(dir).isDirectory())
+                    ret.add(dir);
+                else
+                    log(Level.WARN, "Source path entry needs JDT to be patched, skipping: " + dir);
+            }
+            sourceArray = ret.toArray(new String[ret.size()]);
+        }
+
+        if (root == null)
+            return sourceArray;
+
+        String[] ret = new String[sourceArray.length + 1];
+        ret[0] = root;
+        System.arraycopy(sourceArray, 0, ret, 1, sourceArray.length);
+        return ret;
+    }
+
     public int getCacheHits()
     {
         return this.cache_hits;
@@ -426,19 +800,18 @@ public class RangeExtractor extends ConfLogger<RangeExtractor>
         RangeExtractor range = RangeExtractor.INSTANCE; //TODO: Find a way to make this non-static
 
         Charset charset = range.input.getEncoding(path);
-        encoding = charset == null ? StandardCharsets.UTF_8.name() : charset.name();
-
-        try(InputStream input = RangeExtractor.INSTANCE.input.getInput(path);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input, encoding));
-        ) {
-            CharArrayWriter writer = new CharArrayWriter();
-            char[] buf = new char[1024];
-            int len;
-            while ((len = reader.read(buf, 0, 1024)) > 0) {
-                writer.write(buf, 0, len);
-            }
-            return writer.toCharArray();
-        } catch (IOException e) {
+        if (charset == null)
+            charset = StandardCharsets.UTF_8;
+
+        try
+        {
+            ByteBuffer buf = range.input.getBuffer(path);
+            if (buf == null)
+                throw new FileNotFoundException("Could not read input: " + path);
+            return Util.decode(buf, charset);
+        }
+        catch (IOException e)
+        {
             throw new RuntimeException(e);
         }
     }
@@ -1,14 +1,21 @@
 package net.minecraftforge.srg2source.ast;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 
+import net.minecraftforge.srg2source.rangeapplier.Mappings;
+import net.minecraftforge.srg2source.rangeapplier.MethodData;
+
+/**
+ * Per class view of a mapping file, for looking up members by class. Backed by the shared {@link Mappings}, classes
+ * are only turned into {@link Class} objects when they are asked for.
+ */
 public class SrgFile
 {
     private File source;
+    private Mappings mappings = null;
     private HashMap<String, Class> classes = new HashMap<String, Class>();
     private HashMap<String, Class> rclasses = new HashMap<String, Class>();
     
@@ -19,11 +26,22 @@ public class SrgFile
 
     public Class getClass(String name)
     {
-        return classes.get(name);
+        Class ret = classes.get(name);
+        if (ret == null && mappings != null)
+            ret = build(name);
+        return ret;
     }
     public Class getClass2(String name)
     {
-        return rclasses.get(name);
+        Class ret = rclasses.get(name);
+        if (ret == null && mappings != null)
+        {
+            String original = mappings.getOriginalClass(name);
+            ret = getClass(original == null ? name : original);
+            if (ret != null && !ret.rename.equals(name))
+                ret = null;
+        }
+        return ret;
     }
     
     public Class getClass(String name, String rename)
@@ -39,41 +57,49 @@ public class SrgFile
     
     public SrgFile read() throws IOException
     {
-        BufferedReader reader = new BufferedReader(new FileReader(source));
-        
-        String line = null;
-        while ((line = reader.readLine()) != null)
+        mappings = Mappings.load(source);
+        return this;
+    }
+
+    private Class build(String name)
+    {
+        List<String> fields = mappings.getFieldsOf(name);
+        List<MethodData> methods = mappings.getMethodsOf(name);
+        String rename = mappings.getClasses().get(name);
+        if (rename == null)
         {
-            String[] pts = line.split(" ");
-            if (pts[0].equals("CL:"))
-            {
-                getClass(pts[1], pts[2]);
-            }
-            else if (pts[0].equals("FD:"))
-            {
-                String cls1  = pts[1].substring(0, pts[1].lastIndexOf('/'));
-                String cls2  = pts[2].substring(0, pts[2].lastIndexOf('/'));
-                String name1 = pts[1].substring(cls1.length() + 1);
-                String name2 = pts[2].substring(cls2.length() + 1);
-                Class cls = getClass(cls1, cls2);
-                cls.fields1.put(name1, new Node(cls, name1, null, name2, null));
-                cls.fields2.put(name2, new Node(cls, name2, null, name1, null));
-            }
-            else if (pts[0].equals("MD:"))
-            {
-                String cls1 = pts[1].substring(0, pts[1].lastIndexOf('/'));
-                String cls2 = pts[3].substring(0, pts[3].lastIndexOf('/'));
-                String name1 = pts[1].substring(cls1.length() + 1);
-                String name2 = pts[3].substring(cls2.length() + 1);
-                Class cls = getClass(cls1, cls2);
-                cls.methods1.put(name1+pts[2], new Node(cls, name1, pts[2], name2, pts[4]));
-                cls.methods2.put(name2+pts[4], new Node(cls, name2, pts[4], name1, pts[2]));
-                //System.out.println(name1+pts[2]);
-            }
+            // Not a mapped class, but it has mapped members, which know where it went.
+            if (!fields.isEmpty())
+                rename = owner(mappings.getFields().get(fields.get(0)));
+            else if (!methods.isEmpty())
+                rename = owner(mappings.getMethods().get(methods.get(0)).name);
+            else
+                return null;
         }
-        
-        reader.close();
-        return this;
+
+        Class cls = getClass(name, rename);
+        for (String field : fields)
+        {
+            String name1 = field.substring(name.length() + 1);
+            String target = mappings.getFields().get(field);
+            String name2 = target.substring(target.lastIndexOf('/') + 1);
+            cls.fields1.put(name1, new Node(cls, name1, null, name2, null));
+            cls.fields2.put(name2, new Node(cls, name2, null, name1, null));
+        }
+        for (MethodData method : methods)
+        {
+            String name1 = method.name.substring(name.length() + 1);
+            MethodData target = mappings.getMethods().get(method);
+            String name2 = target.name.substring(target.name.lastIndexOf('/') + 1);
+            cls.methods1.put(name1 + method.sig, new Node(cls, name1, method.sig, name2, target.sig));
+            cls.methods2.put(name2 + target.sig, new Node(cls, name2, target.sig, name1, method.sig));
+        }
+        return cls;
+    }
+
+    private static String owner(String member)
+    {
+        return member.substring(0, member.lastIndexOf('/'));
     }
 
     public static class Node implements Comparable<Node>
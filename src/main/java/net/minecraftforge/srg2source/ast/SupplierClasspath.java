@@ -0,0 +1,219 @@
+package net.minecraftforge.srg2source.ast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.batch.ClasspathLocation;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+import net.minecraftforge.srg2source.util.Util;
+import net.minecraftforge.srg2source.util.io.InputSupplier;
+
+/**
+ * A JDT source path entry that reads from an {@link InputSupplier}, so sources in zips or memory can be used to
+ * resolve bindings without unpacking them to disk first.
+ *
+ * JDT only knows source path entries as strings, so suppliers are registered under a made up path, which is then
+ * passed to {@code ASTParser.setEnvironment} like any directory. Our patch to
+ * {@code FileSystem.getClasspath} asks {@link #getClasspath} first, and gets one of these back for such paths.
+ */
+public class SupplierClasspath extends ClasspathLocation
+{
+    private static final String PREFIX = "srg2source-sourcepath-";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final Map<String, InputSupplier> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the supplier available to JDT under the returned path, until it is unregistered.
+     */
+    public static String register(InputSupplier supplier)
+    {
+        String path = PREFIX + COUNTER.incrementAndGet();
+        REGISTRY.put(path, supplier);
+        return path;
+    }
+
+    public static void unregister(String path)
+    {
+        REGISTRY.remove(path);
+    }
+
+    //ASM redirect for JDT's FileSystem.getClasspath, returning null lets JDT carry on as normal.
+    public static FileSystem.Classpath getClasspath(String path, String encoding, boolean isSourceOnly, AccessRuleSet rules, String destinationPath, Map<String, String> options, String release)
+    {
+        InputSupplier supplier = path.startsWith(PREFIX) ? REGISTRY.get(path) : null;
+        return supplier == null ? null : new SupplierClasspath(path, supplier, rules, destinationPath);
+    }
+
+    private final String path;
+    private final InputSupplier supplier;
+    private Map<String, String> files = null; // Normalized path -> path in the supplier
+    private Map<String, List<String>> packages = null; // Package -> Type names, and an empty list for parent packages
+
+    public SupplierClasspath(String path, InputSupplier supplier, AccessRuleSet rules, String destinationPath)
+    {
+        super(rules, destinationPath);
+        this.path = path;
+        this.supplier = supplier;
+    }
+
+    @Override
+    public void initialize() throws IOException
+    {
+        if (files != null)
+            return;
+
+        files = new HashMap<>();
+        packages = new HashMap<>();
+        for (String file : supplier.gatherAll(".java"))
+        {
+            String name = file.replace('\\', '/');
+            if (name.startsWith("/"))
+                name = name.substring(1);
+            files.put(name, file);
+
+            int idx = name.lastIndexOf('/');
+            String pkg = idx == -1 ? "" : name.substring(0, idx);
+            packages.computeIfAbsent(pkg, k -> new ArrayList<>()).add(name.substring(idx + 1, name.length() - 5));
+            while ((idx = pkg.lastIndexOf('/')) != -1)
+            {
+                pkg = pkg.substring(0, idx);
+                packages.computeIfAbsent(pkg, k -> new ArrayList<>());
+            }
+        }
+    }
+
+    @Override
+    public NameEnvironmentAnswer findClass(char[] typeName, String qualifiedPackageName, String moduleName, String qualifiedBinaryFileName)
+    {
+        return findClass(typeName, qualifiedPackageName, moduleName, qualifiedBinaryFileName, false);
+    }
+
+    @Override
+    public NameEnvironmentAnswer findClass(char[] typeName, String qualifiedPackageName, String moduleName, String qualifiedBinaryFileName, boolean asBinaryOnly)
+    {
+        if (asBinaryOnly || !qualifiedBinaryFileName.endsWith(".class"))
+            return null;
+
+        String name = qualifiedBinaryFileName.substring(0, qualifiedBinaryFileName.length() - 6) + ".java";
+        String file = getFiles().get(name);
+        if (file == null)
+            return null;
+
+        try
+        {
+            ByteBuffer buf = supplier.getBuffer(file);
+            if (buf == null)
+                return null;
+            Charset encoding = supplier.getEncoding(file);
+            if (encoding == null)
+                encoding = StandardCharsets.UTF_8;
+
+            CompilationUnit unit = new CompilationUnit(Util.decode(buf, encoding), path + '/' + name, encoding.name(), destinationPath, false, moduleName);
+            return new NameEnvironmentAnswer(unit, fetchAccessRestriction(qualifiedBinaryFileName));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public char[][][] findTypeNames(String qualifiedPackageName, String moduleName)
+    {
+        List<String> types = getPackages().get(qualifiedPackageName);
+        if (types == null || types.isEmpty())
+            return null;
+
+        char[][] pkg = CharOperation.splitOn('/', qualifiedPackageName.toCharArray());
+        char[][][] ret = new char[types.size()][][];
+        for (int x = 0; x < ret.length; x++)
+            ret[x] = CharOperation.arrayConcat(pkg, types.get(x).toCharArray());
+        return ret;
+    }
+
+    @Override
+    public char[][] getModulesDeclaringPackage(String qualifiedPackageName, String moduleName)
+    {
+        return singletonModuleNameIf(getPackages().containsKey(qualifiedPackageName));
+    }
+
+    @Override
+    public boolean hasCompilationUnit(String qualifiedPackageName, String moduleName)
+    {
+        List<String> types = getPackages().get(qualifiedPackageName);
+        return types != null && !types.isEmpty();
+    }
+
+    @Override
+    public List<FileSystem.Classpath> fetchLinkedJars(FileSystem.ClasspathSectionProblemReporter problemReporter)
+    {
+        return null;
+    }
+
+    @Override
+    public boolean hasAnnotationFileFor(String qualifiedTypeName)
+    {
+        return false;
+    }
+
+    @Override
+    public char[] normalizedPath()
+    {
+        return path.toCharArray();
+    }
+
+    @Override
+    public String getPath()
+    {
+        return path;
+    }
+
+    @Override
+    public int getMode()
+    {
+        return SOURCE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Source supplier " + path;
+    }
+
+    private Map<String, String> getFiles()
+    {
+        ensureInitialized();
+        return files;
+    }
+
+    private Map<String, List<String>> getPackages()
+    {
+        ensureInitialized();
+        return packages;
+    }
+
+    private void ensureInitialized()
+    {
+        try
+        {
+            initialize();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
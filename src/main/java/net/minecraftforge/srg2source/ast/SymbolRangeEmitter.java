@@ -1,27 +1,76 @@
 package net.minecraftforge.srg2source.ast;
 
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.core.dom.*;
 
+import net.minecraftforge.srg2source.ast.BindingCache.ResolvedMethod;
+import net.minecraftforge.srg2source.rangeapplier.RangeMap;
+
 @SuppressWarnings("unchecked")
 public class SymbolRangeEmitter
 {
     private String sourceFilePath;
     private PrintWriter logFile;
+    private BindingCache cache;
+    private OwnerFilter filter;
+    private ExtractorMetrics.FileMetrics metrics = null;
+    private RangeMap ranges = null;
 
     public SymbolRangeEmitter(String sourceFilePath, PrintWriter logFile)
+    {
+        this(sourceFilePath, logFile, new BindingCache());
+    }
+
+    /**
+     * @param cache Shared across every file of the same parser batch, so hierarchy lookups are done once per method.
+     */
+    public SymbolRangeEmitter(String sourceFilePath, PrintWriter logFile, BindingCache cache)
+    {
+        this(sourceFilePath, logFile, cache, null);
+    }
+
+    /**
+     * @param filter Field, method and parameter records are only emitted for owners it accepts, null to emit everything.
+     */
+    public SymbolRangeEmitter(String sourceFilePath, PrintWriter logFile, BindingCache cache, OwnerFilter filter)
     {
         this.sourceFilePath = sourceFilePath;
         this.logFile = logFile;
+        this.cache = cache;
+        this.filter = filter;
+    }
+
+    void setMetrics(ExtractorMetrics.FileMetrics value)
+    {
+        this.metrics = value;
+    }
+
+    /**
+     * Also add every range record to this map, regardless of whether there is a log file.
+     */
+    void setRanges(RangeMap value)
+    {
+        this.ranges = value;
+    }
+
+    private boolean canRemap(String owner)
+    {
+        return filter == null || filter.canRemap(owner);
+    }
+
+    private boolean canRemapLocals(String owner)
+    {
+        return filter == null || filter.canRemapLocals(owner);
     }
 
     public void emitPackageRange(PackageDeclaration pkg)
     {
         String name = pkg.getName().getFullyQualifiedName();
         //jline|package|jline|(file)
-        log(commonFields(name, pkg.getName()) + "package" + FS + name + FS + "(file)");
+        record(name, pkg.getName(), "package", name, "(file)");
     }
 
     public String getSourcePath()
@@ -62,7 +111,7 @@ public class SymbolRangeEmitter
         String className = name.getIdentifier();
         String qualified = ((ITypeBinding)name.resolveBinding()).getQualifiedName();
         //AnsiWindowsTerminal|class|jline.AnsiWindowsTerminal
-        log(commonFields(className, clazz.getName()) + "class" + FS + qualified);
+        record(className, clazz.getName(), "class", qualified);
         return qualified;
     }
 
@@ -135,11 +184,30 @@ public class SymbolRangeEmitter
 
         if (cls.isEmpty())
             cls = parent;
+        if (!canRemap(cls))
+            return;
 
         //server|field|net.minecraft.server.WorldManager|server
         if (name.equals("__OBFID"))
             init = ((StringLiteral)field.getInitializer()).getLiteralValue();
-        log(commonFields(name, field.getName()) + "field" + FS + cls + FS + name + FS + init);
+        record(name, field.getName(), "field", cls, name, init);
+    }
+
+    // Only the strings are cached, bindings would keep every unit's AST alive until the batch is done.
+    private ResolvedMethod resolveRoot(IMethodBinding bind)
+    {
+        if (bind == null)
+        {
+            return null;
+        }
+
+        ResolvedMethod ret = cache.getOverride(bind);
+        if (ret == null)
+        {
+            ret = new ResolvedMethod(resolveOverrides(bind), cache);
+            cache.putOverride(bind, ret);
+        }
+        return ret;
     }
 
     private IMethodBinding resolveOverrides(IMethodBinding bind)
@@ -177,11 +245,14 @@ public class SymbolRangeEmitter
             return bind;
         }
 
-        for (IMethodBinding sup : type.getDeclaredMethods())
+        if (cache.declaresMethod(type, bind.getName()))
         {
-            if (bind.overrides(sup))
+            for (IMethodBinding sup : type.getDeclaredMethods())
             {
-                return resolveOverrides(sup);
+                if (bind.overrides(sup))
+                {
+                    return resolveOverrides(sup);
+                }
             }
         }
         IMethodBinding tmp = resolveOverrides(bind, type.getSuperclass());
@@ -207,22 +278,31 @@ public class SymbolRangeEmitter
     {
         IMethodBinding bind = method.resolveBinding();
 
-        if (resolve)
-        {
-            bind = resolveOverrides(bind);
-        }
-
         if (bind == null)
         {
             log("Null method binding! " + method);
             throw new RuntimeException("Null method binding! " + method);
         }
-        String signature = MethodSignatureHelper.getSignature(bind);
+
+        String signature;
+        String owner;
+        if (resolve)
+        {
+            ResolvedMethod root = resolveRoot(bind);
+            signature = root.signature;
+            owner = root.owner;
+        }
+        else
+        {
+            signature = MethodSignatureHelper.getSignature(bind, cache);
+            owner = bind.getDeclaringClass().getQualifiedName();
+        }
         String name = method.getName().toString();
-        String owner = bind.getDeclaringClass().getQualifiedName();
         if (owner.isEmpty()) owner = className;
+        if (!canRemap(owner))
+            return signature;
         //WorldManager|method|net.minecraft.server.WorldManager|WorldManager|(Lnet/minecraft/server/MinecraftServer;Lnet/minecraft/server/WorldServer;)V
-        log(commonFields(name, method.getName()) + "method" + FS + owner + FS + name + FS + signature);
+        record(name, method.getName(), "method", owner, name, signature);
 
         return signature;
     }
@@ -231,17 +311,12 @@ public class SymbolRangeEmitter
     {
         IMethodBinding bind = method.resolveBinding();
 
-        if (resolve)
-        {
-            bind = resolveOverrides(bind);
-        }
-
         if (bind == null)
         {
             log("Null method binding! " + method);
             throw new RuntimeException("Null method binding! " + method);
         }
-        return MethodSignatureHelper.getSignature(bind);
+        return resolve ? resolveRoot(bind).signature : MethodSignatureHelper.getSignature(bind, cache);
     }
 
     public void emitParameterRange(MethodDeclaration method, String signature, SingleVariableDeclaration param, int index, String className)
@@ -259,9 +334,11 @@ public class SymbolRangeEmitter
 
         if (owner.isEmpty())
             owner = className;
+        if (!canRemapLocals(owner))
+            return;
 
         //entity|param|net.minecraft.server.WorldManager|a|(Lnet/minecraft/server/Entity;)V|entity|0
-        log(commonFields(name, param.getName()) + "param" + FS + owner + FS + mName + FS + signature + FS + name + FS + index);
+        record(name, param.getName(), "param", owner, mName, signature, name, index);
     }
 
 
@@ -271,21 +348,23 @@ public class SymbolRangeEmitter
         if (clazz.isTypeVariable()) return;
         if (clazz.getDeclaringMember() != null)
             return; //There is currently no way to properly address a local named type.
-        log(commonFields(name.toString(), name) + "class" + FS + clazz.getErasure().getQualifiedName() + FS + qualified);
+        record(name.toString(), name, "class", cache.getErasureName(clazz), qualified);
     }
 
 
     public void emitReferencedMethod(Name name, IMethodBinding method, String parent)
     {
-        method = resolveOverrides(method);
-        String cls = method.getDeclaringClass().getErasure().getQualifiedName();
+        ResolvedMethod root = resolveRoot(method);
+        String cls = root.erasure;
         if (cls.isEmpty())
             cls = parent;
+        if (!canRemap(cls))
+            return;
         //systemInstall|method|org.fusesource.jansi.AnsiConsole|systemInstall|()V
-        log(commonFields(name.toString(), name) + "method" +
-            FS + cls +
-            FS + method.getName() +
-            FS + MethodSignatureHelper.getSignature(method));
+        record(name.toString(), name, "method",
+            cls,
+            root.name,
+            root.signature);
     }
 
     public void emitReferencedMethodParameter(Name name, IVariableBinding var, int index, String className)
@@ -293,32 +372,33 @@ public class SymbolRangeEmitter
         IMethodBinding method = var.getDeclaringMethod();
 
         //special case this shit cuz it annoys me
-        IMethodBinding top = resolveOverrides(method);
-        if (top.getDeclaringClass().getQualifiedName().equals("net.minecraft.server.BlockSapling.TreeGenerator")
-            && top.getName().toString().equals("generate"))
-        {
-            method = top;
-        }
-        String owner = method.getDeclaringClass().getQualifiedName();
+        ResolvedMethod target = resolveRoot(method);
+        if (!(target.owner.equals("net.minecraft.server.BlockSapling.TreeGenerator") && target.name.equals("generate")))
+            target = new ResolvedMethod(method, cache);
+        String owner = target.owner;
         if (owner.isEmpty()) owner = className;
+        if (!canRemapLocals(owner))
+            return;
         //out|param|jline.AnsiWindowsTerminal|wrapOutIfNeeded|(Ljava/io/OutputStream;)Ljava/io/OutputStream;|out|0
-        log(commonFields(name.toString(), name) + "param" +
-            FS + owner +
-            FS + method.getName() +
-            FS + MethodSignatureHelper.getSignature(method) +
-            FS + name +
-            FS + index);
+        record(name.toString(), name, "param",
+            owner,
+            target.name,
+            target.signature,
+            name,
+            index);
     }
 
     public void emitLocalVariableRange(Name name, String className, String methodName, String methodSignature, int index)
     {
+        if (!canRemapLocals(className))
+            return;
         //os|localvar|jline.AnsiWindowsTerminal|wrapOutputStream|(Ljava/io/OutputStream;)Ljava/io/OutputStream;|os|0
-        log(commonFields(name.toString(), name) + "localvar" +
-            FS + className +
-            FS + methodName +
-            FS + methodSignature +
-            FS + name +
-            FS + index);
+        record(name.toString(), name, "localvar",
+            className,
+            methodName,
+            methodSignature,
+            name,
+            index);
     }
 
 
@@ -336,11 +416,13 @@ public class SymbolRangeEmitter
         {
             owner = className;
         }
+        if (!canRemap(owner))
+            return;
 
         //ansiSupported|field|jline.AnsiWindowsTerminal|ansiSupported
-        log(commonFields(name.toString(), name) + "field" +
-            FS + owner +
-            FS + field.getName());
+        record(name.toString(), name, "field",
+            owner,
+            field.getName());
     }
 
 /*
@@ -440,12 +522,52 @@ public class SymbolRangeEmitter
     public void log(String s)
     {
         //System.out.println(s);
-        if (logFile != null)
+        write(s);
+        // Records replayed from the cache, the only ones that have to be parsed back.
+        if (metrics != null && s.startsWith("@"))
+            metrics.records++;
+        if (ranges != null && s.trim().startsWith("@"))
+            ranges.add(s);
+        if (s.contains("||"))
+            throw new AssertionError("Empty field found in line: " + s);
+    }
+
+    // A range record, only formatted as text if there is a log file to write it to.
+    private void record(String oldText, ASTNode textRange, String kind, Object... info)
+    {
+        String[] values = new String[info.length];
+        boolean empty = oldText.isEmpty();
+        for (int x = 0; x < info.length; x++)
         {
+            values[x] = String.valueOf(info[x]);
+            empty |= x < info.length - 1 && values[x].isEmpty(); // The last one may be empty, like a field's __OBFID
+        }
+
+        if (empty || logFile != null)
+        {
+            String line = commonFields(oldText, textRange) + kind + FS + String.join(FS, values);
+            write(line);
+            if (empty)
+                throw new AssertionError("Empty field found in line: " + line);
+        }
+        if (metrics != null)
+            metrics.records++; // Counted even without a log file, the pipeline only collects them.
+        if (ranges != null)
+            ranges.add(sourceFilePath, textRange.getStartPosition(), textRange.getStartPosition() + textRange.getLength(), oldText, kind, Arrays.asList(values));
+    }
+
+    private void write(String s)
+    {
+        if (logFile == null)
+            return;
+        if (metrics == null)
             logFile.println(tab + s);
+        else
+        {
+            long start = System.nanoTime();
+            logFile.println(tab + s);
+            metrics.emit += System.nanoTime() - start;
         }
-        if (s.contains("||"))
-            throw new AssertionError("Empty field found in line: " + s);
     }
 
     public void error(String s) {
@@ -455,6 +577,6 @@ public class SymbolRangeEmitter
     public void emitThrowRange(Type exc, ITypeBinding type)
     {
         //IOException|class|java.io.IOException
-        log(commonFields(exc.toString(), exc) + "class" + FS + type.getQualifiedName());
+        record(exc.toString(), exc, "class", type.getQualifiedName());
     }
 }
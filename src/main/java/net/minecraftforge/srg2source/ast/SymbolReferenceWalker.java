@@ -27,11 +27,14 @@ public class SymbolReferenceWalker extends ASTVisitor
      * PsiParameter from PsiForeachStatement/PsiCatchSection. Both are
      * PsiVariable.
      */
-    private HashMap<IVariableBinding, Integer> localVars = new HashMap<IVariableBinding, Integer>();
+    private HashMap<IVariableBinding, Integer> localVars = null; // Most scopes never declare anything, so these are created on demand
     private int nextIndex = 0;
     private int nextIndexNew = 100;    // Separate index for variable declarations in "added" code
 
-    private HashMap<String, Integer> paramIndices = new HashMap<String, Integer>();
+    private HashMap<String, Integer> paramIndices = null;
+
+    // Scopes nest strictly, so each depth only needs one walker, which is reset and reused for every sibling scope.
+    private SymbolReferenceWalker child = null;
 
     public SymbolReferenceWalker(SymbolRangeEmitter emitter, String className, int[] newCode)
     {
@@ -46,6 +49,32 @@ public class SymbolReferenceWalker extends ASTVisitor
         this.parent = parent != null && parent.className != null ? parent : null;
     }
 
+    /**
+     * @return A fresh walker for a scope nested inside this one.
+     */
+    private SymbolReferenceWalker child(String className)
+    {
+        if (child == null)
+            child = new SymbolReferenceWalker(className, this);
+        else
+            child.reset(className, this);
+        return child;
+    }
+
+    private void reset(String className, SymbolReferenceWalker parent)
+    {
+        this.className = className;
+        this.parent = parent.className != null ? parent : null;
+        this.newCodeRanges = parent.newCodeRanges;
+        if (this.localVars != null)
+            this.localVars.clear();
+        if (this.paramIndices != null)
+            this.paramIndices.clear();
+        this.nextIndex = 0;
+        this.nextIndexNew = 100;
+        this.anonCount = 1;
+    }
+
     /**
      * Recursively walk starting from given element
      *
@@ -96,21 +125,40 @@ public class SymbolReferenceWalker extends ASTVisitor
 
     public void setParams(HashMap<String, Integer> indices)
     {
+        if (indices.isEmpty())
+            return;
+        if (this.paramIndices == null)
+            this.paramIndices = new HashMap<String, Integer>();
         this.paramIndices.putAll(indices);
     }
 
+    private int getParamIndex(String id)
+    {
+        if (paramIndices == null)
+            return -1;
+        Integer ret = paramIndices.get(id);
+        return ret == null ? -1 : ret;
+    }
+
     private boolean withinNewCode(int index)
     {
-        for (int x = 0; x < newCodeRanges.length - 1; x += 2)
+        // Ranges are start/end pairs taken from the comments in source order, so they are sorted and never overlap.
+        // Binary search for the last range starting at or before the index, it's the only one that can contain it.
+        int low = 0;
+        int high = (newCodeRanges.length / 2) - 1;
+        int found = -1;
+        while (low <= high)
         {
-            int start = newCodeRanges[x];
-            int end = newCodeRanges[x+1];
-            if (index >= start && index <= end)
+            int mid = (low + high) >>> 1;
+            if (newCodeRanges[mid * 2] <= index)
             {
-                return true;
+                found = mid;
+                low = mid + 1;
             }
+            else
+                high = mid - 1;
         }
-        return false;
+        return found != -1 && index <= newCodeRanges[found * 2 + 1];
     }
 
     /**
@@ -125,6 +173,8 @@ public class SymbolReferenceWalker extends ASTVisitor
         boolean added = withinNewCode(name.getStartPosition());
         int index = added ? nextIndexNew : nextIndex;
 
+        if (localVars == null)
+            localVars = new HashMap<IVariableBinding, Integer>();
         localVars.put(binding, index);
 
         // Variables in "added" code are tracked with a separate index, so they
@@ -155,7 +205,7 @@ public class SymbolReferenceWalker extends ASTVisitor
         emitter.log("Anon Class Start: " + name);// + bind.getName());// + //.getDeclaringClass().getQualifiedName());
         emitter.tab();
 
-        SymbolReferenceWalker walker = new SymbolReferenceWalker(name, this);
+        SymbolReferenceWalker walker = child(name);
         for (BodyDeclaration body : (List<BodyDeclaration>)node.bodyDeclarations())
         {
             if (body instanceof FieldDeclaration)
@@ -167,7 +217,7 @@ public class SymbolReferenceWalker extends ASTVisitor
                 {
                     emitter.emitFieldRange(frag, name);
                     // Initializer can refer to other symbols, so walk it, too
-                    SymbolReferenceWalker init = new SymbolReferenceWalker(name, walker);
+                    SymbolReferenceWalker init = walker.child(name);
                     init.anonCount = walker.anonCount;
                     init.walk(frag.getInitializer());
                     walker.anonCount = init.anonCount;
@@ -211,6 +261,19 @@ public class SymbolReferenceWalker extends ASTVisitor
     public boolean visit(NormalAnnotation        node) { return true; }
     public boolean visit(SingleMemberAnnotation  node) { return true; }
 
+    // Leaves that can never hold a name, no point in dispatching into them.
+    // Labels on break/continue are names, so those still get walked.
+    public boolean visit(BooleanLiteral          node) { return false; }
+    public boolean visit(CharacterLiteral        node) { return false; }
+    public boolean visit(NullLiteral             node) { return false; }
+    public boolean visit(NumberLiteral           node) { return false; }
+    public boolean visit(StringLiteral           node) { return false; }
+    public boolean visit(Modifier                node) { return false; }
+    public boolean visit(EmptyStatement          node) { return false; }
+    public boolean visit(ThisExpression          node) { return node.getQualifier() != null; }
+    // Only type annotations, like 'new @A int[3]', can put a name on a primitive type.
+    public boolean visit(PrimitiveType           node) { return node.getAST().apiLevel() >= 8 && !node.annotations().isEmpty(); }
+
     public boolean visit(FieldDeclaration node) {
         emitter.emitTypeRange(node.getType()); //TODO: This double prints due to the walk below, Why are we specifically handling fields?
 
@@ -225,7 +288,7 @@ public class SymbolReferenceWalker extends ASTVisitor
         {
             emitter.emitFieldRange(frag, className);
             // Initializer can refer to other symbols, so walk it, too
-            SymbolReferenceWalker walker = new SymbolReferenceWalker(className, this);
+            SymbolReferenceWalker walker = child(className);
             walker.anonCount = this.anonCount;
             walker.walk(frag.getInitializer());
             this.anonCount = walker.anonCount;
@@ -243,7 +306,7 @@ public class SymbolReferenceWalker extends ASTVisitor
         emitter.log("Enum Start: " + name);
         emitter.tab();
 
-        SymbolReferenceWalker walker = new SymbolReferenceWalker(name, this);
+        SymbolReferenceWalker walker = child(name);
 
         walker.walk(node.getJavadoc());
         walker.walk(node.modifiers());
@@ -268,7 +331,7 @@ public class SymbolReferenceWalker extends ASTVisitor
         emitter.tab();
 
         List<SingleVariableDeclaration> params = (List<SingleVariableDeclaration>)node.parameters();
-        HashMap<String, Integer> paramIds = new HashMap<String, Integer>();
+        HashMap<String, Integer> paramIds = params.isEmpty() ? null : new HashMap<String, Integer>();
 
         for (int x = 0; x < params.size(); x++)
         {
@@ -280,10 +343,11 @@ public class SymbolReferenceWalker extends ASTVisitor
         }
 
         // Method body
-        SymbolReferenceWalker walker = new SymbolReferenceWalker(className, this);
+        SymbolReferenceWalker walker = child(className);
 
         walker.anonCount = this.anonCount;
-        walker.setParams(paramIds);
+        if (paramIds != null)
+            walker.setParams(paramIds);
 
         walker.walk(node.getJavadoc());
         if(node.getAST().apiLevel() == 2) {
@@ -337,12 +401,12 @@ public class SymbolReferenceWalker extends ASTVisitor
                 String owner = className;
                 SymbolReferenceWalker walker = this;
 
-                Integer i = (paramIndices.containsKey(id) ? paramIndices.get(id) : -1);
+                int i = getParamIndex(id);
                 while (i == -1 && walker.parent != null)
                 {
                     walker = walker.parent;
                     owner = walker.className;
-                    i = (walker.paramIndices.containsKey(id) ? walker.paramIndices.get(id) : -1);
+                    i = walker.getParamIndex(id);
                 }
                 emitter.emitReferencedMethodParameter(node, var, i, owner);
             }
@@ -432,7 +496,7 @@ public class SymbolReferenceWalker extends ASTVisitor
         emitter.log("Class Start: " + name);
         emitter.tab();
 
-        SymbolReferenceWalker walker = new SymbolReferenceWalker(name, this);
+        SymbolReferenceWalker walker = child(name);
 
         if (node.getAST().apiLevel() == 2)
         {
@@ -0,0 +1,113 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Reads straight from a shared, immutable map, and only copies it the first time something is written to it.
+ * Writes must go through the map itself, its views and inverse are read only.
+ */
+class CopyOnWriteBiMap<K, V> extends ForwardingMap<K, V> implements BiMap<K, V>
+{
+    private BiMap<K, V> delegate;
+    private boolean copied = false;
+
+    CopyOnWriteBiMap(BiMap<K, V> shared)
+    {
+        this.delegate = shared;
+    }
+
+    @Override
+    protected BiMap<K, V> delegate()
+    {
+        return delegate;
+    }
+
+    boolean isCopied()
+    {
+        return copied;
+    }
+
+    void share(BiMap<K, V> shared)
+    {
+        this.delegate = shared;
+        this.copied = false;
+    }
+
+    private BiMap<K, V> writable()
+    {
+        if (!copied)
+        {
+            delegate = HashBiMap.create(delegate);
+            copied = true;
+        }
+        return delegate;
+    }
+
+    @Override
+    public V put(K key, V value)
+    {
+        return writable().put(key, value);
+    }
+
+    @Override
+    public V forcePut(K key, V value)
+    {
+        return writable().forcePut(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map)
+    {
+        writable().putAll(map);
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        return writable().remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        writable().clear();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function)
+    {
+        writable().replaceAll(function);
+    }
+
+    @Override
+    public Set<K> keySet()
+    {
+        return Collections.unmodifiableSet(delegate.keySet());
+    }
+
+    @Override
+    public Set<V> values()
+    {
+        return Collections.unmodifiableSet(delegate.values());
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        return Collections.unmodifiableSet(delegate.entrySet());
+    }
+
+    @Override
+    public BiMap<V, K> inverse()
+    {
+        return Maps.unmodifiableBiMap(delegate.inverse());
+    }
+}
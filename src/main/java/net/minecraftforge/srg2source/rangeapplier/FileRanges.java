@@ -0,0 +1,161 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import net.minecraftforge.srg2source.rangeapplier.RangeMap.RangeEntry;
+
+/**
+ * The ranges of a single file, as parallel arrays sorted by start, instead of a set of {@link RangeEntry} objects.
+ * Old texts and keys are ids into the owning {@link RangeMap}'s symbol table, as most of them repeat a lot.
+ *
+ * Ranges are appended as they are read, and sorted once when first looked at. Like the set this replaces, only the
+ * first range read for any start is kept.
+ */
+public class FileRanges
+{
+    private final List<String> symbols;
+    private int size = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] oldTexts = new int[16];
+    private int[] keys = new int[16];
+    private BitSet qualified = new BitSet();
+    private boolean sorted = true;
+
+    FileRanges(List<String> symbols)
+    {
+        this.symbols = symbols;
+    }
+
+    void add(int start, int end, int oldText, int key, boolean qualified)
+    {
+        if (size == starts.length)
+        {
+            int len = size * 2;
+            starts = Arrays.copyOf(starts, len);
+            ends = Arrays.copyOf(ends, len);
+            oldTexts = Arrays.copyOf(oldTexts, len);
+            keys = Arrays.copyOf(keys, len);
+        }
+        if (size > 0 && start <= starts[size - 1])
+            sorted = false;
+        starts[size] = start;
+        ends[size] = end;
+        oldTexts[size] = oldText;
+        keys[size] = key;
+        this.qualified.set(size, qualified);
+        size++;
+    }
+
+    // Everything from the other file, in the order it was read, with its symbols moved to our table.
+    void addAll(FileRanges other, int[] symbolIds)
+    {
+        for (int x = 0; x < other.size; x++)
+            add(other.starts[x], other.ends[x], symbolIds[other.oldTexts[x]], symbolIds[other.keys[x]], other.qualified.get(x));
+    }
+
+    // Sorts start and index packed into one long, starts are never negative, so no boxing and no comparator.
+    // The index breaks ties, so for a repeated start the one read first comes first, and is the one we keep.
+    private void sort()
+    {
+        if (sorted)
+            return;
+
+        long[] order = new long[size];
+        for (int x = 0; x < size; x++)
+            order[x] = ((long)starts[x] << 32) | x;
+        Arrays.sort(order);
+
+        int[] nStarts = new int[size];
+        int[] nEnds = new int[size];
+        int[] nOldTexts = new int[size];
+        int[] nKeys = new int[size];
+        BitSet nQualified = new BitSet(size);
+        int count = 0;
+        for (int x = 0; x < size; x++)
+        {
+            int idx = (int)order[x];
+            if (count > 0 && nStarts[count - 1] == starts[idx])
+                continue;
+            nStarts[count] = starts[idx];
+            nEnds[count] = ends[idx];
+            nOldTexts[count] = oldTexts[idx];
+            nKeys[count] = keys[idx];
+            nQualified.set(count, qualified.get(idx));
+            count++;
+        }
+
+        starts = nStarts;
+        ends = nEnds;
+        oldTexts = nOldTexts;
+        keys = nKeys;
+        qualified = nQualified;
+        size = count;
+        sorted = true;
+    }
+
+    public int size()
+    {
+        sort();
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0; // Sorting never empties it.
+    }
+
+    public int getStart(int idx)
+    {
+        sort();
+        return starts[idx];
+    }
+
+    public int getEnd(int idx)
+    {
+        sort();
+        return ends[idx];
+    }
+
+    public String getExpectedOldText(int idx)
+    {
+        sort();
+        return symbols.get(oldTexts[idx]);
+    }
+
+    public String getKey(int idx)
+    {
+        sort();
+        return symbols.get(keys[idx]);
+    }
+
+    public boolean isQualified(int idx)
+    {
+        sort();
+        return qualified.get(idx);
+    }
+
+    /**
+     * A read only view as {@link RangeEntry}s, created as they are asked for.
+     */
+    public List<RangeEntry> asEntries()
+    {
+        return new AbstractList<RangeEntry>()
+        {
+            @Override
+            public RangeEntry get(int idx)
+            {
+                return new RangeEntry(getStart(idx), getEnd(idx), getExpectedOldText(idx), getKey(idx), isQualified(idx));
+            }
+
+            @Override
+            public int size()
+            {
+                return FileRanges.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,340 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import joptsimple.internal.Strings;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.io.Files;
+
+import net.minecraftforge.srg2source.util.jfr.JfrEvents;
+
+/**
+ * Immutable package, class, field and method mappings, read from SRG, CSRG or TSRG files.
+ *
+ * Files loaded through {@link #load(File)} are parsed once and shared, so everything that reads the same mapping file
+ * gets the same instance, until the file changes or memory runs low. The cache can be turned off with the
+ * {@code srg2source.mappingCache} system property, or {@link #setCacheEnabled(boolean)}.
+ *
+ * The maps, and their inverses, are built when the file is read. The per class indexes of fields and methods are only
+ * built when first asked for. Safe to use from multiple threads.
+ */
+public class Mappings
+{
+    private static final Pattern CLS_ENTRY = Pattern.compile("L([^;]+);");
+    private static final Map<String, Cached> CACHE = new ConcurrentHashMap<>();
+    private static volatile boolean cacheEnabled = Boolean.parseBoolean(System.getProperty("srg2source.mappingCache", "true"));
+
+    private final ImmutableBiMap<String, String> packages;
+    private final ImmutableBiMap<String, String> classes;
+    private final ImmutableBiMap<String, String> fields;
+    private final ImmutableBiMap<MethodData, MethodData> methods;
+    private volatile Map<String, List<String>> fieldsByOwner = null;
+    private volatile Map<String, List<MethodData>> methodsByOwner = null;
+    private volatile Map<String, String> ownersByRename = null;
+
+    static final Mappings EMPTY = of(ImmutableBiMap.of(), ImmutableBiMap.of(), ImmutableBiMap.of(), ImmutableBiMap.of());
+
+    private Mappings(BiMap<String, String> packages, BiMap<String, String> classes, BiMap<String, String> fields, BiMap<MethodData, MethodData> methods)
+    {
+        this.packages = ImmutableBiMap.copyOf(packages);
+        this.classes = ImmutableBiMap.copyOf(classes);
+        this.fields = ImmutableBiMap.copyOf(fields);
+        this.methods = ImmutableBiMap.copyOf(methods);
+    }
+
+    static Mappings of(BiMap<String, String> packages, BiMap<String, String> classes, BiMap<String, String> fields, BiMap<MethodData, MethodData> methods)
+    {
+        return new Mappings(packages, classes, fields, methods);
+    }
+
+    /**
+     * Returns the mappings in this file, parsing it only if it hasn't been already, or if it changed since.
+     */
+    public static Mappings load(File file)
+    {
+        if (!cacheEnabled)
+            return read(file, null);
+
+        String path;
+        try
+        {
+            path = file.getCanonicalPath();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        // One entry per file, a changed file replaces the old one instead of piling up next to it.
+        String stamp = file.lastModified() + "|" + file.length();
+        Mappings[] ret = new Mappings[1];
+        CACHE.compute(path, (k, v) ->
+        {
+            ret[0] = v == null || !v.stamp.equals(stamp) ? null : v.get();
+            if (ret[0] != null)
+                return v;
+            ret[0] = read(file, null);
+            return new Cached(stamp, ret[0]);
+        });
+        return ret[0];
+    }
+
+    /**
+     * Forget every loaded file, the instances already handed out stay valid.
+     */
+    public static void clearCache()
+    {
+        CACHE.clear();
+    }
+
+    /**
+     * Turns sharing loaded files on or off, every {@link #load(File)} parses the file again while it is off.
+     */
+    public static void setCacheEnabled(boolean value)
+    {
+        cacheEnabled = value;
+        if (!value)
+            CACHE.clear();
+    }
+
+    /**
+     * Parses a file on top of existing mappings, which are also used to remap the owners of CSRG and TSRG members.
+     * Entries in the file replace those in the base. The result is not cached.
+     */
+    public static Mappings read(File file, Mappings base)
+    {
+        BiMap<String, String> packageMap = base == null ? HashBiMap.create() : HashBiMap.create(base.packages);
+        BiMap<String, String> classMap = base == null ? HashBiMap.create() : HashBiMap.create(base.classes);
+        BiMap<String, String> fieldMap = base == null ? HashBiMap.create() : HashBiMap.create(base.fields);
+        BiMap<MethodData, MethodData> methodMap = base == null ? HashBiMap.create() : HashBiMap.create(base.methods);
+        read(file, packageMap, classMap, fieldMap, methodMap);
+        return new Mappings(packageMap, classMap, fieldMap, methodMap);
+    }
+
+    // Parses a file into these maps, the classes already in them are used to remap the owners of CSRG and TSRG members.
+    private static void read(File file, BiMap<String, String> packageMap, BiMap<String, String> classMap, BiMap<String, String> fieldMap, BiMap<MethodData, MethodData> methodMap)
+    {
+        try
+        {
+            Object event = JfrEvents.beginMappingLoad();
+            int packages = packageMap.size(), classes = classMap.size(), fields = fieldMap.size(), methods = methodMap.size();
+
+            List<String> lines = Files.readLines(file, StandardCharsets.UTF_8);
+            read(lines, packageMap, classMap, fieldMap, methodMap);
+
+            JfrEvents.commitMappingLoad(event, file.getPath(), lines.size(), packageMap.size() - packages, classMap.size() - classes, fieldMap.size() - fields, methodMap.size() - methods);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void read(List<String> lines, BiMap<String, String> packageMap, BiMap<String, String> classMap, BiMap<String, String> fieldMap, BiMap<MethodData, MethodData> methodMap)
+    {
+        String currentClass = null;
+        lines = lines.stream().map(line -> line.split("#")[0]).filter(l -> !Strings.isNullOrEmpty(l.trim())).collect(Collectors.toList());
+
+        for (String line : lines) //Gather class remaps so we can load TSRG
+        {
+            if (line.startsWith("\t") || (line.indexOf(':') != -1 && !line.startsWith("CL:")))
+                continue;
+            if (line.indexOf(':') != -1)
+                line = line.substring(4);
+
+            String[] args = line.split(" ");
+            if (args.length == 2 && !args[0].endsWith("/"))
+                classMap.put(args[0], args[1]);
+        }
+
+        for (String line : lines)
+        {
+            int idx = line.indexOf(':');
+            if (idx != -1 && line.startsWith("CL:"))
+                continue;
+
+            String type = idx != -1 ? line.substring(0, idx) : null;
+            if (idx != -1) line = line.substring(4);
+            if (line.startsWith("\t")) {
+                if (currentClass == null)
+                    throw new RuntimeException("Invalid TSRG line, missing current class: " + line);
+                line = currentClass + " " + line.substring(1);
+            }
+
+            String[] args = line.split(" ");
+            if (type != null)
+            {
+                if (type.equals("PK"))
+                    packageMap.put(args[0], args[1]);
+                else if (type.equals("CL"))
+                    ; // We already read classes above.
+                else if (type.equals("FD"))
+                    fieldMap.put(args[0], args[1]);
+                else if (type.equals("MD"))
+                    methodMap.put(new MethodData(args[0], args[1]), new MethodData(args[2], args[3]));
+                else
+                    throw new RuntimeException("Invalid SRG Line: " + type + ": " + line);
+            }
+            else
+            {
+              if (args.length == 2)
+              {
+                  if (args[0].endsWith("/")) //Package
+                      packageMap.put(args[0].substring(0, args[0].length() - 1), args[1].substring(0, args[1].length() - 1));
+                  else
+                      currentClass = args[0];
+              }
+              else if (args.length == 3)
+                  fieldMap.put(args[0] + "/" + args[1], remapClass(classMap, args[0]) + "/" + args[2]);
+              else if (args.length == 4)
+                  methodMap.put(new MethodData(args[0] + "/" + args[1], args[2]), new MethodData(remapClass(classMap, args[0]) + "/" + args[3], remapDesc(classMap, args[2])));
+              else
+                  throw new RuntimeException("Invalid CSRG Line: " + type + ": " + line);
+            }
+        }
+    }
+
+    private static String remapClass(BiMap<String, String> classMap, String cls)
+    {
+        String ret = classMap.get(cls);
+        if (ret != null)
+            return ret;
+
+        int idx = cls.lastIndexOf('$');
+        if (idx != -1)
+            ret = remapClass(classMap, cls.substring(0, idx)) + cls.substring(idx);
+        else
+            ret = cls;
+        classMap.put(cls, ret);
+        return cls;
+    }
+
+    private static String remapDesc(BiMap<String, String> classMap, String desc)
+    {
+        StringBuffer buf = new StringBuffer();
+        Matcher matcher = CLS_ENTRY.matcher(desc);
+        while (matcher.find()) {
+            matcher.appendReplacement(buf, "L" + Matcher.quoteReplacement(remapClass(classMap, matcher.group(1))) + ";");
+        }
+        matcher.appendTail(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Package name to new package name, both with / separators. {@code inverse()} maps new names back.
+     */
+    public ImmutableBiMap<String, String> getPackages()
+    {
+        return packages;
+    }
+
+    /**
+     * Internal class name to new internal class name.
+     */
+    public ImmutableBiMap<String, String> getClasses()
+    {
+        return classes;
+    }
+
+    /**
+     * {@code owner/name} to {@code newOwner/newName}.
+     */
+    public ImmutableBiMap<String, String> getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * {@code owner/name desc} to {@code newOwner/newName newDesc}.
+     */
+    public ImmutableBiMap<MethodData, MethodData> getMethods()
+    {
+        return methods;
+    }
+
+    /**
+     * Every mapped field of this class, as {@code owner/name}.
+     */
+    public List<String> getFieldsOf(String owner)
+    {
+        Map<String, List<String>> index = fieldsByOwner;
+        if (index == null)
+            fieldsByOwner = index = index(fields.keySet().asList(), name -> name);
+        return index.getOrDefault(owner, Collections.emptyList());
+    }
+
+    /**
+     * Every mapped method of this class.
+     */
+    public List<MethodData> getMethodsOf(String owner)
+    {
+        Map<String, List<MethodData>> index = methodsByOwner;
+        if (index == null)
+            methodsByOwner = index = index(methods.keySet().asList(), mtd -> mtd.name);
+        return index.getOrDefault(owner, Collections.emptyList());
+    }
+
+    /**
+     * The class that was renamed to this one. Also found through its members, for files that only map those.
+     */
+    public String getOriginalClass(String rename)
+    {
+        String ret = classes.inverse().get(rename);
+        if (ret != null)
+            return ret;
+
+        Map<String, String> index = ownersByRename;
+        if (index == null)
+        {
+            Map<String, String> owners = new HashMap<>();
+            fields.forEach((k, v) -> owners.putIfAbsent(owner(v), owner(k)));
+            methods.forEach((k, v) -> owners.putIfAbsent(owner(v.name), owner(k.name)));
+            ownersByRename = index = Collections.unmodifiableMap(owners);
+        }
+        return index.get(rename);
+    }
+
+    private static String owner(String member)
+    {
+        int idx = member.lastIndexOf('/');
+        return idx == -1 ? "" : member.substring(0, idx);
+    }
+
+    // Racing threads may both build it, but they build the same thing, and only one is kept.
+    private static <T> Map<String, List<T>> index(List<T> values, Function<T, String> name)
+    {
+        Map<String, List<T>> ret = new HashMap<>();
+        for (T value : values)
+            ret.computeIfAbsent(owner(name.apply(value)), k -> new ArrayList<>()).add(value);
+        ret.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        return Collections.unmodifiableMap(ret);
+    }
+
+    // Held softly, so mappings nobody uses anymore can be reclaimed when memory runs low.
+    private static class Cached extends SoftReference<Mappings>
+    {
+        private final String stamp;
+
+        private Cached(String stamp, Mappings value)
+        {
+            super(value);
+            this.stamp = stamp;
+        }
+    }
+}
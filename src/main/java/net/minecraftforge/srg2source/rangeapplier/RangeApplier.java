@@ -2,8 +2,8 @@ package net.minecraftforge.srg2source.rangeapplier;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,12 +15,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 
-import net.minecraftforge.srg2source.rangeapplier.RangeMap.RangeEntry;
 import net.minecraftforge.srg2source.util.Util;
 import net.minecraftforge.srg2source.util.io.ConfLogger;
 import net.minecraftforge.srg2source.util.io.InputSupplier;
 import net.minecraftforge.srg2source.util.io.OutputSupplier;
+import net.minecraftforge.srg2source.util.jfr.JfrEvents;
 
 public class RangeApplier extends ConfLogger<RangeApplier>
 {
@@ -31,6 +32,7 @@ public class RangeApplier extends ConfLogger<RangeApplier>
     private OutputSupplier output = null;
     private RangeMap range = null;
     private boolean annotate = false;
+    private boolean verify = false;
 
     public void readSrg(File srgs)
     {
@@ -70,6 +72,14 @@ public class RangeApplier extends ConfLogger<RangeApplier>
         this.range = new RangeMap(value);
     }
 
+    /**
+     * Only load, and so only remap, these files. Uses the map's {@link RangeMapIndex} to skip over everything else.
+     */
+    public void readRangeMap(File value, Collection<String> paths)
+    {
+        this.range = new RangeMap().read(value, paths, msg -> log(Level.WARN, msg));
+    }
+
     public void keepImports(boolean value)
     {
         this.keepImports = value;
@@ -80,57 +90,194 @@ public class RangeApplier extends ConfLogger<RangeApplier>
         this.annotate = value;
     }
 
+    /**
+     * Check every range against the sources before anything is written, so a stale range map fails straight away,
+     * listing all of its problems, instead of part way through the output.
+     */
+    public void setVerify(boolean value)
+    {
+        this.verify = value;
+    }
+
 
     //private void remapSources(boolean annotate) throws IOException
     public void run() throws IOException
+    {
+        validate();
+        if (range == null)
+            throw new IllegalStateException("Missing Range Apply range");
+
+        List<String> paths = new ArrayList<String>(range.keySet());
+        Collections.sort(paths);
+
+        if (verify)
+        {
+            List<String> errors = verify(paths);
+            if (!errors.isEmpty())
+            {
+                errors.forEach(e -> log(Level.ERROR, e));
+                closeLog();
+                throw new IllegalStateException("Range map does not match the sources, " + errors.size() + " ranges differ. Regenerate symbol map on latest sources or start with fresh source and try again");
+            }
+        }
+
+        log("Processing " + paths.size() + " files");
+
+        expect(paths);
+
+        try
+        {
+            for (String filePath : paths)
+                apply(filePath, range.getRanges(filePath));
+
+            finish();
+        }
+        finally
+        {
+            closeLog(); // Also when failing, so an asynchronous logger's thread doesn't outlive us.
+        }
+    }
+
+    /**
+     * Checks the expected text of every range against the sources, in parallel, and returns every mismatch found.
+     * Files that can't be found are skipped, like {@link #run()} does.
+     */
+    public List<String> verify()
     {
         if (input == null)
             throw new IllegalStateException("Missing Range Apply input");
-        if (output == null)
-            throw new IllegalStateException("Missing Range Apply output");
         if (range == null)
             throw new IllegalStateException("Missing Range Apply range");
 
         List<String> paths = new ArrayList<String>(range.keySet());
         Collections.sort(paths);
+        return verify(paths);
+    }
 
-        log("Processing " + paths.size() + " files");
+    private List<String> verify(List<String> paths)
+    {
+        return paths.parallelStream().flatMap(path -> verify(path, range.getRanges(path)).stream()).collect(Collectors.toList());
+    }
 
-        for (String filePath : paths)
+    private List<String> verify(String fileName, FileRanges ranges)
+    {
+        String data;
+        try
+        {
+            ByteBuffer buf = input.getBuffer(fileName);
+            if (buf == null)
+                return Collections.emptyList();
+            data = new String(Util.decode(buf, StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            return Collections.singletonList("Could not read " + fileName + ": " + e);
+        }
+
+        List<String> ret = new ArrayList<>();
+        for (int idx = 0; idx < ranges.size(); idx++)
         {
-            log("Start Processing: " + filePath);
-            InputStream stream = input.getInput(filePath);
+            int start = ranges.getStart(idx);
+            int end = ranges.getEnd(idx);
+            String expectedOldText = ranges.getExpectedOldText(idx);
+            String key = ranges.getKey(idx);
+
+            // Same as processJavaSourceFile, removed packages take their trailing period with them.
+            boolean period = map.maps.containsKey(key) && map.maps.get(key).isEmpty();
+            if (period)
+                end++;
 
-            //no stream? what?
-            if (stream == null)
+            boolean matches = end - start == expectedOldText.length() + (period ? 1 : 0) && end <= data.length() &&
+                data.regionMatches(start, expectedOldText, 0, expectedOldText.length()) && (!period || data.charAt(end - 1) == '.');
+            if (!matches)
             {
-                // yeah.. nope.
-                log("Data not found: " + filePath);
-                continue;
+                String found = start < 0 || start > end || end > data.length() ? "(out of bounds)" : data.substring(start, end);
+                ret.add("Expected '" + expectedOldText + (period ? "." : "") + "' at [" + start + "," + end + "] in " + fileName + ", but found '" + found + "'");
             }
+        }
+        return ret;
+    }
 
-            String data = new String(Util.readStream(stream), StandardCharsets.UTF_8);
-            stream.close();
-
-            // process
-            List<String> out = processJavaSourceFile(filePath, data, range.get(filePath), annotate);
-            filePath = out.get(0);
-            data = out.get(1);
-
-            // write.
-            if (data != null) {
-                OutputStream outStream = output.getOutput(filePath);
-                if (outStream == null)
-                    throw new IllegalStateException("Could not get output stream form: " + filePath);
-                outStream.write(data.getBytes(StandardCharsets.UTF_8));
-                outStream.close();
-            }
+    void validate()
+    {
+        if (input == null)
+            throw new IllegalStateException("Missing Range Apply input");
+        if (output == null)
+            throw new IllegalStateException("Missing Range Apply output");
+    }
+
+    /**
+     * Tells the output which files are going to be applied, before any of them are.
+     */
+    public void expect(List<String> paths)
+    {
+        List<String> outputs = new ArrayList<>(paths.size());
+        for (String filePath : paths)
+            outputs.add(getNewTopLevelQualifiedName(filePath) + ".java");
+        output.expect(outputs);
+    }
+
+    /**
+     * Tells the output that a file passed to {@link #expect(List)} is not going to be written after all.
+     */
+    public void skip(String filePath)
+    {
+        output.skip(getNewTopLevelQualifiedName(filePath) + ".java");
+    }
+
+    /**
+     * Remaps a single file using the given ranges, and writes it to the output.
+     * Used by {@link #run()}, and by anything that produces ranges itself instead of reading a range map.
+     */
+    public void apply(String filePath, FileRanges ranges) throws IOException
+    {
+        log(Level.DEBUG, "Start Processing: " + filePath);
+        ByteBuffer buf = input.getBuffer(filePath);
+
+        //no data? what?
+        if (buf == null)
+        {
+            // yeah.. nope.
+            log(Level.WARN, "Data not found: " + filePath);
+            skip(filePath);
+            return;
+        }
 
-            log("End  Processing: " + filePath);
-            log("");
+        String data = new String(Util.decode(buf, StandardCharsets.UTF_8));
+
+        // process
+        List<String> out = processJavaSourceFile(filePath, data, ranges, annotate);
+        filePath = out.get(0);
+        data = out.get(1);
+
+        // write.
+        if (data != null) {
+            OutputStream outStream = output.getOutput(filePath);
+            if (outStream == null)
+                throw new IllegalStateException("Could not get output stream form: " + filePath);
+            outStream.write(data.getBytes(StandardCharsets.UTF_8));
+            outStream.close();
         }
+        else
+            output.skip(filePath);
+
+        log(Level.DEBUG, "End  Processing: " + filePath);
+        log(Level.DEBUG, "");
+    }
 
-        output.close();
+    /**
+     * Closes the output, and the logger if we own it, call once every file has been applied.
+     */
+    public void finish() throws IOException
+    {
+        try
+        {
+            output.close();
+        }
+        finally
+        {
+            closeLog();
+        }
     }
 
     // ---------------------------------------------------------------------------------------------------
@@ -143,79 +290,55 @@ public class RangeApplier extends ConfLogger<RangeApplier>
      * @return
      * @throws IOException
      */
-    private List<String> processJavaSourceFile(String fileName, String data, Collection<RangeEntry> rangeList, boolean shouldAnnotate) throws IOException
+    private List<String> processJavaSourceFile(String fileName, String data, FileRanges ranges, boolean shouldAnnotate) throws IOException
     {
+        Object event = JfrEvents.beginApplyFile();
+        String oldFileName = fileName;
+        int renames = 0;
+
         StringBuilder outData = new StringBuilder();
         outData.append(data);
 
         Set<String> importsToAdd = new TreeSet<String>();
         int shift = 0;
 
-        // Existing package/class name (with package, internal) derived from filename
-        String oldTopLevelClassFullName = Util.getTopLevelClassForFilename(fileName);
-        String oldTopLevelClassPackage = Util.splitPackageName(oldTopLevelClassFullName);
-        String oldTopLevelClassName = Util.splitBaseName(oldTopLevelClassFullName);
-
-        // New package/class name through mapping
-        String newTopLevelClassPackage = Util.sourceName2Internal(map.maps.get("package " + oldTopLevelClassPackage));
-        String newTopLevelClassFullName = Util.sourceName2Internal(map.maps.get("class " + oldTopLevelClassFullName), false);
-        String newTopLevelClassName = Util.splitBaseName(newTopLevelClassFullName);
-
-        if (newTopLevelClassName != null)
-        {
-            newTopLevelClassPackage = Util.splitPackageName(newTopLevelClassFullName); //Just trust the class name from the mappings!
-            //Note: this overrides the package wildcard. So CL: lines from SRG files take presidence over PK: lines.
-            //Pretty sure this is the accepted practice for the SRG format, but we may run into issues.
-        }
-        else if (newTopLevelClassPackage != null)
-        {
-            newTopLevelClassName = oldTopLevelClassName; // If the package changed, but we don't have a new name... assume we're keeping the name...
-            // Could cause conflicts if the new package has a class with the same name!
-            // We run into this for Minecraft's package-info.java's...
-            //throw new RuntimeException("filename " + fileName + " found package " + oldTopLevelClassPackage + "->" + newTopLevelClassPackage + " but no class map for " + newTopLevelClassName);
-        }
-
-        if (newTopLevelClassPackage == null) // If the package wasnt remapped, then we're keeping our name!
-        {
-            newTopLevelClassPackage = oldTopLevelClassPackage;
-            newTopLevelClassName = oldTopLevelClassName;
-        }
-
-        String newTopLevelQualifiedName = (newTopLevelClassPackage + "/" + newTopLevelClassName).replace('\\', '/');
+        String newTopLevelQualifiedName = getNewTopLevelQualifiedName(fileName);
 
         // start,end,expectedOldText,key
-        for (RangeEntry info : rangeList)
+        for (int idx = 0; idx < ranges.size(); idx++)
         {
-            int end = info.end;
-            String expectedOldText = info.expectedOldText;
-            if (map.maps.containsKey(info.key) && map.maps.get(info.key).isEmpty()) // has an empty key.
+            int start = ranges.getStart(idx);
+            int end = ranges.getEnd(idx);
+            String expectedOldText = ranges.getExpectedOldText(idx);
+            String infoKey = ranges.getKey(idx);
+            if (map.maps.containsKey(infoKey) && map.maps.get(infoKey).isEmpty()) // has an empty key.
             {
                 // Replacing a symbol with no text = removing a symbol
-                if (!info.key.startsWith("package "))
-                    throw new RuntimeException("unable to remove non-package symbol " + info.key);
+                if (!infoKey.startsWith("package "))
+                    throw new RuntimeException("unable to remove non-package symbol " + infoKey);
 
                 // Remove that pesky extra period after qualified package names
                 end++;
                 expectedOldText += ".";
             }
 
-            String oldName = outData.substring(info.start + shift, end + shift);
+            String oldName = outData.substring(start + shift, end + shift);
 
             if (!oldName.equals(expectedOldText))
-                throw new RuntimeException("Rename sanity check failed: expected '" + expectedOldText + "' at [" + info.start + "," + end + "] (shifted " + shift + " to [" + (shift + info.start) + "," + (shift + end) + "]) in " + fileName + ", but found '" + oldName + "'\nRegenerate symbol map on latest sources or start with fresh source and try again");
+                throw new RuntimeException("Rename sanity check failed: expected '" + expectedOldText + "' at [" + start + "," + end + "] (shifted " + shift + " to [" + (shift + start) + "," + (shift + end) + "]) in " + fileName + ", but found '" + oldName + "'\nRegenerate symbol map on latest sources or start with fresh source and try again");
 
-            String newName = getNewName(info.key, oldName, map.maps, shouldAnnotate);
+            String newName = getNewName(infoKey, oldName, map.maps, shouldAnnotate);
             if (newName == null)
                 newName = oldName;
 
-            if (info.key.startsWith("class "))
+            if (infoKey.startsWith("class "))
             {
                 //TODO: This entire section needs re-writing so we can better detect qualifications. But that requires re-writing the extractor to print in internal names.
                 //  It currently prints inner classes as package/outer/inner. So there is no way to determine the outer class from the package.
                 //  We need to print it in bytecode internal name, so package/outer$inner.
 
                 // do importing.
-                String key = info.key;
+                String key = infoKey;
                 if (key.equals("class " + newName.replace('.', '/')))
                 {
                     key = null;
@@ -226,7 +349,8 @@ public class RangeApplier extends ConfLogger<RangeApplier>
                     for (int i = 0; i < Util.countChar(newName, '.'); i++)
                         key = Util.splitPackageName(key);
 
-                    log("New Key: "+key);
+                    if (isLoggable(Level.DEBUG))
+                        log(Level.DEBUG, "New Key: "+key);
                 }
 
                 if (key == null)
@@ -240,12 +364,12 @@ public class RangeApplier extends ConfLogger<RangeApplier>
                     if (map.imports.containsKey(key))
                         impt = map.imports.get(key).replace('.', '/').replace('$', '/'); // TODO: make extractor print in internal names so we know about inner classes, for now, convert to the same format as the key
 
-                    if (!info.qualified && needsImport(newTopLevelQualifiedName, impt))
+                    if (!ranges.isQualified(idx) && needsImport(newTopLevelQualifiedName, impt))
                     {
                         impt = impt.replace('/', '.').replace('$', '.');
                         if (impt.indexOf('.') == -1)
                         {
-                            log("ERROR: Invalid import attempted, \"" + impt + "\"");
+                            log(Level.ERROR, "ERROR: Invalid import attempted, \"" + impt + "\"");
                         }
                         else
                         {
@@ -258,32 +382,74 @@ public class RangeApplier extends ConfLogger<RangeApplier>
             if (oldName.equals(newName))
                 continue; //No rename? Skip the rest.
 
-            log("Rename " + info.key + "[" + (info.start + shift) + "," + (end + shift) + "]" + "::" + oldName + "->" + newName);
+            if (isLoggable(Level.DEBUG))
+                log(Level.DEBUG, "Rename " + infoKey + "[" + (start + shift) + "," + (end + shift) + "]" + "::" + oldName + "->" + newName);
 
             // Rename algorithm:
             // 1. textually replace text at specified range with new text
             // 2. shift future ranges by difference in text length
-            //data = data.substring(0, info.start + shift) + newName + data.substring(end + shift);
-            outData.replace(info.start + shift, end + shift, newName);
+            //data = data.substring(0, start + shift) + newName + data.substring(end + shift);
+            outData.replace(start + shift, end + shift, newName);
             shift += (newName.length() - oldName.length());
+            renames++;
         }
 
         // Lastly, update imports - this == separate from symbol range manipulation above
+        int imports = importsToAdd.size();
+        Object importEvent = JfrEvents.beginImportUpdate();
         String outString = updateImports(outData, importsToAdd, map.imports);
+        JfrEvents.commitImportUpdate(importEvent, oldFileName, imports, importsToAdd.size(), outString.length());
 
         // rename?
         fileName = fileName.replace('\\', '/');
         String newFileName = newTopLevelQualifiedName + ".java";
         if (!fileName.equals(newFileName))
         {
-            log("Rename file " + fileName + " -> " + newFileName);
+            log(Level.DEBUG, "Rename file " + fileName + " -> " + newFileName);
 
             fileName = newFileName;
         }
 
+        JfrEvents.commitApplyFile(event, oldFileName, fileName, data.length(), ranges.size(), renames, imports);
         return Arrays.asList(fileName, outString);
     }
 
+    private String getNewTopLevelQualifiedName(String fileName)
+    {
+        // Existing package/class name (with package, internal) derived from filename
+        String oldTopLevelClassFullName = Util.getTopLevelClassForFilename(fileName);
+        String oldTopLevelClassPackage = Util.splitPackageName(oldTopLevelClassFullName);
+        String oldTopLevelClassName = Util.splitBaseName(oldTopLevelClassFullName);
+
+        // New package/class name through mapping
+        String newTopLevelClassPackage = Util.sourceName2Internal(map.maps.get("package " + oldTopLevelClassPackage));
+        String newTopLevelClassFullName = Util.sourceName2Internal(map.maps.get("class " + oldTopLevelClassFullName), false);
+        String newTopLevelClassName = Util.splitBaseName(newTopLevelClassFullName);
+
+        if (newTopLevelClassName != null)
+        {
+            newTopLevelClassPackage = Util.splitPackageName(newTopLevelClassFullName); //Just trust the class name from the mappings!
+            //Note: this overrides the package wildcard. So CL: lines from SRG files take presidence over PK: lines.
+            //Pretty sure this is the accepted practice for the SRG format, but we may run into issues.
+        }
+        else if (newTopLevelClassPackage != null)
+        {
+            newTopLevelClassName = oldTopLevelClassName; // If the package changed, but we don't have a new name... assume we're keeping the name...
+            // Could cause conflicts if the new package has a class with the same name!
+            // We run into this for Minecraft's package-info.java's...
+            //throw new RuntimeException("filename " + fileName + " found package " + oldTopLevelClassPackage + "->" + newTopLevelClassPackage + " but no class map for " + newTopLevelClassName);
+        }
+
+        if (newTopLevelClassPackage == null) // If the package wasnt remapped, then we're keeping our name!
+        {
+            newTopLevelClassPackage = oldTopLevelClassPackage;
+            newTopLevelClassName = oldTopLevelClassName;
+        }
+
+
+        return (newTopLevelClassPackage + "/" + newTopLevelClassName).replace('\\', '/');
+    }
+
     private boolean needsImport(String topLevel, String reference)
     {
         if (reference.startsWith(topLevel)) //This is a inner class, nested unknown amounts deep.... Just assume it's qualified correctly in code.
@@ -361,7 +527,8 @@ public class RangeApplier extends ConfLogger<RangeApplier>
                     newClass = oldClass;
                 newClass = newClass.replace('$', '.');
 
-                log("Import: " + newClass);
+                if (isLoggable(Level.DEBUG))
+                    log(Level.DEBUG, "Import: " + newClass);
 
                 if (!newImports.remove(newClass)) // New file doesn't need the import, so delete the line.
                 {
@@ -453,12 +620,12 @@ public class RangeApplier extends ConfLogger<RangeApplier>
                                                      //But we will never ADD them
         }
 
-        if (newImports.size() > 0)
+        if (newImports.size() > 0 && isLoggable(Level.DEBUG))
         {
-            log("Adding " + newImports.size() + " imports");
+            log(Level.DEBUG, "Adding " + newImports.size() + " imports");
             for (String imp : newImports)
             {
-                log("        " + imp);
+                log(Level.DEBUG, "        " + imp);
                 //log("        " + HashCode.fromBytes(imp.getBytes()).toString());
             }
         }
@@ -475,7 +642,8 @@ public class RangeApplier extends ConfLogger<RangeApplier>
                 // Constructors are not in the method map (from .srg, and can't be derived
                 // exclusively from the class map since we don't know all the parameters).. so we
                 // have to synthesize a rename from the class map here. Ugh..but, it works.
-                log("FOUND CONSTR " + key + " " + constructorClassName);
+                if (isLoggable(Level.DEBUG))
+                    log(Level.DEBUG, "FOUND CONSTR " + key + " " + constructorClassName);
                 if (renameMap.containsKey("class " + constructorClassName))
                     // Rename constructor to new class name
                     newName = Util.splitBaseName(Util.sourceName2Internal(renameMap.get("class " + constructorClassName), false));
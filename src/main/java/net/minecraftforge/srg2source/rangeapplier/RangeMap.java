@@ -2,38 +2,44 @@ package net.minecraftforge.srg2source.rangeapplier;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Strings;
 import net.minecraftforge.srg2source.util.Util;
 
 import com.google.common.base.Splitter;
-import com.google.common.base.Supplier;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.common.io.Files;
 
 public class RangeMap
 {
-    private final Multimap<String, RangeEntry> rangeMap;
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final Splitter SPLITTER = Splitter.on('|');
+
+    private final HashMap<String, FileRanges> rangeMap = new HashMap<>();
     private final HashMap<String, String> obfids = Maps.newHashMap();
+    // Old texts and keys, shared by every file, most are repeated many times over.
+    private final List<String> symbols = new ArrayList<>();
+    private final HashMap<String, Integer> symbolIds = new HashMap<>();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
 
     public RangeMap()
     {
-        rangeMap = Multimaps.newMultimap(new HashMap<String, Collection<RangeEntry>>(), new Supplier<Collection<RangeEntry>>()
-        {
-            @Override
-            public Collection<RangeEntry> get()
-            {
-                return new TreeSet<RangeEntry>();
-            }
-        });
     }
 
     public RangeMap(File src)
@@ -47,86 +53,154 @@ public class RangeMap
         return rangeMap.keySet();
     }
 
+    /**
+     * The ranges of this file sorted by start, as {@link RangeEntry} objects, see {@link #getRanges(String)}.
+     */
     public Collection<RangeEntry> get(String key)
     {
-       return rangeMap.get(key);
+        FileRanges ranges = rangeMap.get(key);
+        return ranges == null ? Collections.emptyList() : ranges.asEntries();
     }
 
+    /**
+     * The ranges of this file sorted by start, or null if it has none.
+     */
+    public FileRanges getRanges(String key)
+    {
+        return rangeMap.get(key);
+    }
+
+    /**
+     * Reads the whole map. Big maps are memory mapped and parsed in chunks, in parallel, see {@link #setParallelChunkSize(int)}.
+     */
     public RangeMap read(File file)
     {
-        try
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
         {
-            for (String line : Files.readLines(file, Charset.defaultCharset()))
+            long size = channel.size();
+            Charset charset = Charset.defaultCharset();
+            // Chunks are split on newline bytes, which is only safe if that's all a newline can be.
+            if (size <= chunkSize || !Arrays.equals("\n".getBytes(charset), new byte[] { '\n' }))
             {
-                line = line.trim();
-                List<String> tokens = Splitter.on('|').splitToList(line);
-                if (!tokens.get(0).equals("@"))
-                    continue;
-                String fileName = tokens.get(1);
-                int startRange = Integer.parseInt(tokens.get(2));
-                int endRange = Integer.parseInt(tokens.get(3));
-                String expectedOldText = tokens.get(4);
-                String kind = tokens.get(5);
-                List<String> info = tokens.subList(6, tokens.size());
-                boolean qualified = false;
-
-                String key;
-                // Build unique identifier for symbol
-                if (kind.equals("package"))
-                {
-                    String forClass = info.get(1);
-
-                    // key = "package "+packageName # ignore old name (unique identifier == filename)
-                    if (forClass.equals("(file)"))
-                        forClass = Util.getTopLevelClassForFilename(fileName);
-                    else
-                        forClass = Util.sourceName2Internal(forClass); // . -> /
+                for (String line : Files.readLines(file, charset))
+                    add(line);
+                return this;
+            }
 
-                    // 'forClass' == the class that == in this package; when the class is
-                    // remapped to a different package, this range should be updated
+            List<long[]> chunks = new ArrayList<>();
+            long start = 0;
+            while (start < size)
+            {
+                long end = findLineEnd(channel, Math.min(start + chunkSize, size));
+                chunks.add(new long[] { start, end });
+                start = end;
+            }
 
-                    key = "package " + forClass;
-                }
-                else if (kind.equals("class"))
-                {
-                    String className = Util.sourceName2Internal(info.get(0));
-
-                    // no valid classname? must be anonymous or something stupid like that... no rename.
-                    if (Strings.isNullOrEmpty(className))
-                    {
-                        continue;
-                    }
-                    key = "class " + className;
-                    if (info.size() > 1 && info.get(1).equals("true"))
-                        qualified = true;
-                }
-                else if (kind.equals("field"))
-                {
-                    key = "field " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1);
-                    if (info.get(1).equals("__OBFID"))
-                        obfids.put(info.get(0), info.get(2));
-                }
-                else if (kind.equals("method"))
+            // Each chunk gets its own map, they are then merged in order so the first range for any start still wins.
+            List<RangeMap> parts = chunks.parallelStream().map(chunk -> {
+                try
                 {
-                    if (expectedOldText.contains("super") || expectedOldText.contains("this"))
-                        continue; // hack: avoid erroneously replacing super/this calls
-                    key = "method " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2);
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                    RangeMap part = new RangeMap();
+                    part.addLines(charset.decode(buf));
+                    return part;
                 }
-                else if (kind.equals("param"))
+                catch (IOException e)
                 {
-                    key = "param " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2) + " " + info.get(4);  // ignore old name (positional)
+                    throw new UncheckedIOException(e);
                 }
-                else if (kind.equals("localvar"))
-                {
-                    key = "localvar " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2) + " " + info.get(4); // ignore old name (positional)
-                }
-                else
+            }).collect(Collectors.toList());
+
+            parts.forEach(this::merge);
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return this;
+    }
+
+    /**
+     * Maps bigger than this many bytes are read in chunks of this size, in parallel.
+     */
+    public RangeMap setParallelChunkSize(int value)
+    {
+        if (value < 1)
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + value);
+        this.chunkSize = value;
+        return this;
+    }
+
+    // The position after the first newline at or after pos, or the end of the file.
+    private static long findLineEnd(FileChannel channel, long pos) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (pos < channel.size())
+        {
+            buf.clear();
+            int read = channel.read(buf, pos);
+            if (read <= 0)
+                break;
+            for (int x = 0; x < read; x++)
+            {
+                if (buf.get(x) == '\n')
+                    return pos + x + 1;
+            }
+            pos += read;
+        }
+        return channel.size();
+    }
+
+    private void addLines(CharSequence text)
+    {
+        String data = text.toString();
+        int start = 0;
+        while (start < data.length())
+        {
+            int end = data.indexOf('\n', start);
+            if (end == -1)
+                end = data.length();
+            if (end > start)
+                add(data.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    private void merge(RangeMap other)
+    {
+        int[] ids = new int[other.symbols.size()];
+        for (int x = 0; x < ids.length; x++)
+            ids[x] = getSymbol(other.symbols.get(x));
+        other.rangeMap.forEach((path, ranges) -> rangeMap.computeIfAbsent(path, k -> new FileRanges(symbols)).addAll(ranges, ids));
+        obfids.putAll(other.obfids);
+    }
+
+    /**
+     * Reads only the ranges of these files, seeking to them with the map's {@link RangeMapIndex}.
+     */
+    public RangeMap read(File file, Collection<String> paths)
+    {
+        return read(file, paths, null);
+    }
+
+    /**
+     * @param warn Told about problems with the index that don't stop the read, null to ignore them.
+     */
+    public RangeMap read(File file, Collection<String> paths, Consumer<String> warn)
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            RangeMapIndex index = RangeMapIndex.load(file, warn);
+            for (String path : paths)
+            {
+                for (long[] span : index.get(path))
                 {
-                    throw new RuntimeException("Unknown kind: " + kind);
+                    byte[] data = new byte[(int)span[1]];
+                    raf.seek(span[0]);
+                    raf.readFully(data);
+                    addLines(new String(data, Charset.defaultCharset()));
                 }
-
-                // (startRange, endRange, expectedOldText, key)
-                rangeMap.put(fileName, new RangeEntry(startRange, endRange, expectedOldText, key, qualified));
             }
         }
         catch (IOException e)
@@ -137,6 +211,99 @@ public class RangeMap
         return this;
     }
 
+    /**
+     * Adds a single line of a range map. Returns false if it was skipped, because it isn't a range or can't be renamed.
+     * If the start was already taken, the range is dropped when the file is first looked at.
+     */
+    public boolean add(String line)
+    {
+        line = line.trim();
+        List<String> tokens = SPLITTER.splitToList(line);
+        if (!tokens.get(0).equals("@"))
+            return false;
+        return add(tokens.get(1), Integer.parseInt(tokens.get(2)), Integer.parseInt(tokens.get(3)), tokens.get(4), tokens.get(5), tokens.subList(6, tokens.size()));
+    }
+
+    /**
+     * Adds a single range, already split into the fields of a range map line, {@code info} being those after the kind.
+     * Lets the extractor hand over its records without formatting them as text first.
+     */
+    public boolean add(String fileName, int startRange, int endRange, String expectedOldText, String kind, List<String> info)
+    {
+        boolean qualified = false;
+
+        String key;
+        // Build unique identifier for symbol
+        if (kind.equals("package"))
+        {
+            String forClass = info.get(1);
+
+            // key = "package "+packageName # ignore old name (unique identifier == filename)
+            if (forClass.equals("(file)"))
+                forClass = Util.getTopLevelClassForFilename(fileName);
+            else
+                forClass = Util.sourceName2Internal(forClass); // . -> /
+
+            // 'forClass' == the class that == in this package; when the class is
+            // remapped to a different package, this range should be updated
+
+            key = "package " + forClass;
+        }
+        else if (kind.equals("class"))
+        {
+            String className = Util.sourceName2Internal(info.get(0));
+
+            // no valid classname? must be anonymous or something stupid like that... no rename.
+            if (Strings.isNullOrEmpty(className))
+            {
+                return false;
+            }
+            key = "class " + className;
+            if (info.size() > 1 && info.get(1).equals("true"))
+                qualified = true;
+        }
+        else if (kind.equals("field"))
+        {
+            key = "field " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1);
+            if (info.get(1).equals("__OBFID"))
+                obfids.put(info.get(0), info.get(2));
+        }
+        else if (kind.equals("method"))
+        {
+            if (expectedOldText.contains("super") || expectedOldText.contains("this"))
+                return false; // hack: avoid erroneously replacing super/this calls
+            key = "method " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2);
+        }
+        else if (kind.equals("param"))
+        {
+            key = "param " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2) + " " + info.get(4);  // ignore old name (positional)
+        }
+        else if (kind.equals("localvar"))
+        {
+            key = "localvar " + Util.sourceName2Internal(info.get(0)) + "/" + info.get(1) + " " + info.get(2) + " " + info.get(4); // ignore old name (positional)
+        }
+        else
+        {
+            throw new RuntimeException("Unknown kind: " + kind);
+        }
+
+        // (startRange, endRange, expectedOldText, key)
+        rangeMap.computeIfAbsent(fileName, k -> new FileRanges(symbols)).add(startRange, endRange, getSymbol(expectedOldText), getSymbol(key), qualified);
+        return true;
+    }
+
+    private int getSymbol(String value)
+    {
+        Integer ret = symbolIds.get(value);
+        if (ret == null)
+        {
+            ret = symbols.size();
+            symbols.add(value);
+            symbolIds.put(value, ret);
+        }
+        return ret;
+    }
+
     public static class RangeEntry implements Comparable<RangeEntry>
     {
         public final int start, end;
@@ -0,0 +1,182 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraftforge.srg2source.util.Util;
+
+/**
+ * The difference between two range maps, per file, so maps for consecutive revisions can be stored cheaply.
+ *
+ * A delta is a range map where the section of each file that did not change, everything from its startProcessing
+ * line to its endProcessing line, is replaced with a single reference to the same section in the base:
+ * <pre>
+ * unchangedProcessing "path" md5: (md5 of the section)
+ * </pre>
+ * Changed and new files are written in full, removed files are left out. Lines outside of sections are kept as is.
+ *
+ * References are only ever made in the order sections appear in the base, so a delta is applied in a single pass
+ * over both files, without holding either in memory.
+ */
+public class RangeMapDelta
+{
+    public static final String HEADER = "Range map delta v1";
+    private static final String START = "startProcessing \"";
+    private static final String END = "endProcessing \"";
+    private static final String SAME = "unchangedProcessing \"";
+    // Lines are passed through untouched, whatever the map was written in.
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    /**
+     * Writes the delta that turns {@code base} into {@code target}.
+     */
+    public static void diff(File base, File target, File delta) throws IOException
+    {
+        Map<String, Integer> order = new HashMap<>();
+        Map<String, String> digests = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(base.toPath(), CHARSET))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.startsWith(START))
+                    continue;
+                List<String> section = readSection(line, reader);
+                String path = getPath(line);
+                order.put(path, order.size());
+                digests.put(path, digest(section));
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(target.toPath(), CHARSET);
+             BufferedWriter writer = Files.newBufferedWriter(delta.toPath(), CHARSET))
+        {
+            writeLine(writer, HEADER);
+            int last = -1;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.startsWith(START))
+                {
+                    writeLine(writer, line);
+                    continue;
+                }
+
+                List<String> section = readSection(line, reader);
+                String path = getPath(line);
+                String digest = digest(section);
+                Integer idx = order.get(path);
+                if (idx != null && idx > last && digest.equals(digests.get(path)))
+                {
+                    writeLine(writer, SAME + path + "\" md5: " + digest);
+                    last = idx;
+                }
+                else
+                {
+                    for (String l : section)
+                        writeLine(writer, l);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the full range map described by {@code delta}, taking unchanged sections from {@code base}.
+     */
+    public static void apply(File base, File delta, File output) throws IOException
+    {
+        try (BufferedReader baseReader = Files.newBufferedReader(base.toPath(), CHARSET);
+             BufferedReader reader = Files.newBufferedReader(delta.toPath(), CHARSET);
+             BufferedWriter writer = Files.newBufferedWriter(output.toPath(), CHARSET))
+        {
+            if (!HEADER.equals(reader.readLine()))
+                throw new IllegalArgumentException("Not a range map delta: " + delta);
+
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.startsWith(SAME))
+                {
+                    writeLine(writer, line);
+                    continue;
+                }
+
+                String path = getPath(line);
+                String digest = line.substring(line.lastIndexOf(' ') + 1);
+                List<String> section = findSection(baseReader, path);
+                if (section == null)
+                    throw new IllegalStateException("Base range map does not have " + path + ", or not in the order the delta expects");
+                if (!digest.equals(digest(section)))
+                    throw new IllegalStateException("Base range map has a different " + path + " than the delta was made against");
+
+                for (String l : section)
+                    writeLine(writer, l);
+            }
+        }
+    }
+
+    public static boolean isDelta(File file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), CHARSET))
+        {
+            return HEADER.equals(reader.readLine());
+        }
+    }
+
+    // Skips ahead in the base, everything before the section we want was either removed or changed.
+    private static List<String> findSection(BufferedReader reader, String path) throws IOException
+    {
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            if (!line.startsWith(START))
+                continue;
+            List<String> section = readSection(line, reader);
+            if (path.equals(getPath(line)))
+                return section;
+        }
+        return null;
+    }
+
+    private static List<String> readSection(String start, BufferedReader reader) throws IOException
+    {
+        String end = END + getPath(start) + '"';
+        List<String> ret = new ArrayList<>();
+        ret.add(start);
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            ret.add(line);
+            if (line.equals(end))
+                break;
+        }
+        return ret;
+    }
+
+    // Works for all of our prefixes, they all end in a quote followed by the path.
+    private static String getPath(String line)
+    {
+        int start = line.indexOf('"') + 1;
+        return line.substring(start, line.indexOf('"', start));
+    }
+
+    private static String digest(List<String> section)
+    {
+        return Util.md5(String.join("\n", section), CHARSET);
+    }
+
+    private static void writeLine(BufferedWriter writer, String line) throws IOException
+    {
+        writer.write(line);
+        writer.newLine();
+    }
+}
@@ -0,0 +1,261 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.google.common.base.Splitter;
+
+import net.minecraftforge.srg2source.util.Util;
+
+/**
+ * Where each file's ranges are in a range map, so only the files that are needed have to be read.
+ *
+ * Each entry is a byte offset and length of a span of lines whose records all belong to the same file. Usually that is
+ * one startProcessing to endProcessing section per file, but a file may have several spans, which are then read in
+ * order. Sorted maps without sections work just as well.
+ *
+ * The index is kept next to the map, in {@code <map>.idx}, and rebuilt when the map's size or timestamp changes,
+ * or when a hash of its first and last block does, which catches rewrites within the timestamp's granularity.
+ */
+public class RangeMapIndex
+{
+    private static final String HEADER = "Range map index v2";
+    private static final int CHECK_BLOCK = 64 * 1024;
+
+    private final long mapLength;
+    private final long mapModified;
+    private final String mapCheck;
+    private final Map<String, List<long[]>> spans = new LinkedHashMap<>();
+
+    private RangeMapIndex(long mapLength, long mapModified, String mapCheck)
+    {
+        this.mapLength = mapLength;
+        this.mapModified = mapModified;
+        this.mapCheck = mapCheck;
+    }
+
+    public static File getIndexFile(File map)
+    {
+        return new File(map.getPath() + ".idx");
+    }
+
+    /**
+     * Returns the index of this map, reading the sidecar if it is up to date, and otherwise building and saving it.
+     */
+    public static RangeMapIndex load(File map) throws IOException
+    {
+        return load(map, null);
+    }
+
+    /**
+     * @param warn Told when the index can't be saved, such as next to a map in a read only location. Null to ignore.
+     */
+    public static RangeMapIndex load(File map, Consumer<String> warn) throws IOException
+    {
+        File file = getIndexFile(map);
+        if (file.exists())
+        {
+            RangeMapIndex ret = read(file);
+            if (ret != null && ret.mapLength == map.length() && ret.mapModified == map.lastModified() && ret.mapCheck.equals(check(map)))
+                return ret;
+        }
+
+        RangeMapIndex ret = build(map);
+        try
+        {
+            ret.write(file);
+        }
+        catch (IOException e)
+        {
+            // Still usable, just not saved for next time.
+            if (warn != null)
+                warn.accept("Could not save range map index " + file + ", it will be rebuilt on every read: " + e);
+        }
+        return ret;
+    }
+
+    // Cheap content check, so a rewrite of the same size within the timestamp's granularity isn't taken as unchanged.
+    private static String check(File map) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(map, "r"))
+        {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            long length = raf.length();
+            byte[] buf = new byte[(int)Math.min(CHECK_BLOCK, length)];
+            raf.readFully(buf);
+            md.update(buf);
+            if (length > CHECK_BLOCK)
+            {
+                buf = new byte[(int)Math.min(CHECK_BLOCK, length - CHECK_BLOCK)];
+                raf.seek(length - buf.length);
+                raf.readFully(buf);
+                md.update(buf);
+            }
+            return Util.hex(md.digest());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Scans the map for the spans of each file. Only the paths are decoded, everything else is just searched for line ends.
+     */
+    public static RangeMapIndex build(File map) throws IOException
+    {
+        RangeMapIndex ret = new RangeMapIndex(map.length(), map.lastModified(), check(map));
+        Charset charset = Charset.defaultCharset(); // Same as RangeMap.read
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(map), 1 << 16))
+        {
+            byte[] line = new byte[256];
+            long offset = 0;
+            String current = null;
+            long spanStart = 0;
+            long spanEnd = 0;
+
+            while (true)
+            {
+                int len = 0;
+                int b;
+                while ((b = in.read()) != -1 && b != '\n')
+                {
+                    if (len == line.length)
+                        line = Arrays.copyOf(line, len * 2);
+                    line[len++] = (byte)b;
+                }
+                if (b == -1 && len == 0)
+                    break;
+                long next = offset + len + (b == -1 ? 0 : 1);
+
+                int start = 0;
+                while (start < len && (line[start] == ' ' || line[start] == '\t'))
+                    start++;
+
+                if (len - start > 2 && line[start] == '@' && line[start + 1] == '|')
+                {
+                    int end = start + 2;
+                    while (end < len && line[end] != '|')
+                        end++;
+                    String path = new String(line, start + 2, end - start - 2, charset);
+                    if (!path.equals(current))
+                    {
+                        if (current != null)
+                            ret.add(current, spanStart, spanEnd - spanStart);
+                        current = path;
+                        spanStart = offset;
+                    }
+                    spanEnd = next;
+                }
+                else if (current != null && startsWith(line, start, len, "startProcessing"))
+                {
+                    // A new section, even for the same file. Keeps spans from swallowing the header of the next file.
+                    ret.add(current, spanStart, spanEnd - spanStart);
+                    current = null;
+                }
+
+                offset = next;
+                if (b == -1)
+                    break;
+            }
+
+            if (current != null)
+                ret.add(current, spanStart, spanEnd - spanStart);
+        }
+        return ret;
+    }
+
+    private static boolean startsWith(byte[] line, int start, int len, String prefix)
+    {
+        if (len - start < prefix.length())
+            return false;
+        for (int x = 0; x < prefix.length(); x++)
+        {
+            if (line[start + x] != prefix.charAt(x))
+                return false;
+        }
+        return true;
+    }
+
+    // Null if it can't be read, it is then simply built again.
+    private static RangeMapIndex read(File file)
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            String line = reader.readLine();
+            if (line == null)
+                return null;
+            List<String> header = Splitter.on('|').splitToList(line);
+            if (header.size() != 4 || !HEADER.equals(header.get(0)))
+                return null;
+
+            RangeMapIndex ret = new RangeMapIndex(Long.parseLong(header.get(1)), Long.parseLong(header.get(2)), header.get(3));
+            while ((line = reader.readLine()) != null)
+            {
+                List<String> pts = Splitter.on('|').splitToList(line);
+                ret.add(pts.get(0), Long.parseLong(pts.get(1)), Long.parseLong(pts.get(2)));
+            }
+            return ret;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    public void write(File file) throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write(HEADER + '|' + mapLength + '|' + mapModified + '|' + mapCheck);
+            writer.newLine();
+            for (Map.Entry<String, List<long[]>> entry : spans.entrySet())
+            {
+                for (long[] span : entry.getValue())
+                {
+                    writer.write(entry.getKey() + '|' + span[0] + '|' + span[1]);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private void add(String path, long offset, long length)
+    {
+        spans.computeIfAbsent(path, k -> new ArrayList<>()).add(new long[] { offset, length });
+    }
+
+    public Set<String> getPaths()
+    {
+        return Collections.unmodifiableSet(spans.keySet());
+    }
+
+    /**
+     * The {offset, length} of every span of this file in the map, in the order they appear, or an empty list.
+     */
+    public List<long[]> get(String path)
+    {
+        List<long[]> ret = spans.get(path);
+        return ret == null ? Collections.emptyList() : Collections.unmodifiableList(ret);
+    }
+}
@@ -0,0 +1,281 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Sorts range maps by file and start offset without holding them in memory.
+ *
+ * Records are sorted in runs of at most {@link #setRunSize(int) runSize} lines, which are spilled to temp files
+ * and then merged, at most {@link #setFanIn(int) fanIn} files at a time. Already sorted maps, like the shards of
+ * a split up extraction, can be merged directly with {@link #merge(List, File)}.
+ *
+ * Only the range records themselves are written, with their original text. The sort is stable, so reading the
+ * result into a {@link RangeMap} gives the same ranges as reading the inputs in order: Where several records share
+ * a start, the first one still wins. Exact duplicates next to each other are dropped, as they could never win.
+ */
+public class RangeMapSorter
+{
+    public static final int DEFAULT_RUN_SIZE = 250000;
+    public static final int DEFAULT_FAN_IN = 64;
+
+    private static final Comparator<Record> ORDER = Comparator.<Record, String>comparing(r -> r.path).thenComparingInt(r -> r.start);
+
+    private final File tempDir;
+    private Charset charset = Charset.defaultCharset(); // Same as RangeMap.read
+    private int runSize = DEFAULT_RUN_SIZE;
+    private int fanIn = DEFAULT_FAN_IN;
+
+    /**
+     * @param tempDir Where sorted runs are spilled, null for the system default.
+     */
+    public RangeMapSorter(File tempDir)
+    {
+        this.tempDir = tempDir;
+    }
+
+    public RangeMapSorter setCharset(Charset value)
+    {
+        this.charset = value;
+        return this;
+    }
+
+    /**
+     * How many records to sort in memory before spilling them to disk.
+     */
+    public RangeMapSorter setRunSize(int value)
+    {
+        if (value < 1)
+            throw new IllegalArgumentException("Run size must be at least 1: " + value);
+        this.runSize = value;
+        return this;
+    }
+
+    /**
+     * How many files to merge at once, which bounds the number of open files.
+     */
+    public RangeMapSorter setFanIn(int value)
+    {
+        if (value < 2)
+            throw new IllegalArgumentException("Fan in must be at least 2: " + value);
+        this.fanIn = value;
+        return this;
+    }
+
+    /**
+     * Sorts the records of all inputs, in that order, into one output.
+     */
+    public void sort(List<File> inputs, File output) throws IOException
+    {
+        List<File> runs = new ArrayList<>();
+        try
+        {
+            List<Record> buf = new ArrayList<>();
+            for (File input : inputs)
+            {
+                try (BufferedReader reader = Files.newBufferedReader(input.toPath(), charset))
+                {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        Record rec = Record.parse(line);
+                        if (rec == null)
+                            continue;
+                        buf.add(rec);
+                        if (buf.size() >= runSize)
+                            runs.add(spill(buf));
+                    }
+                }
+            }
+            if (!buf.isEmpty() || runs.isEmpty())
+                runs.add(spill(buf));
+
+            mergeRuns(runs, output, true);
+        }
+        finally
+        {
+            runs.forEach(File::delete);
+        }
+    }
+
+    /**
+     * Merges range maps which are each already sorted, like the output of {@link #sort(List, File)}.
+     */
+    public void merge(List<File> inputs, File output) throws IOException
+    {
+        mergeRuns(inputs, output, false);
+    }
+
+    private File spill(List<Record> buf) throws IOException
+    {
+        Collections.sort(buf, ORDER); // Stable, so equal starts keep the order they were read in.
+        File run = File.createTempFile("rangemap", ".run", tempDir);
+        try (BufferedWriter writer = Files.newBufferedWriter(run.toPath(), charset))
+        {
+            String last = null;
+            for (Record rec : buf)
+            {
+                if (!rec.line.equals(last))
+                {
+                    writer.write(rec.line);
+                    writer.newLine();
+                }
+                last = rec.line;
+            }
+        }
+        buf.clear();
+        return run;
+    }
+
+    private void mergeRuns(List<File> runs, File output, boolean ownsRuns) throws IOException
+    {
+        // Merge neighbours, never reordering, until few enough are left to do it in one go.
+        Set<File> owned = ownsRuns ? new HashSet<>(runs) : new HashSet<>();
+        List<File> temps = new ArrayList<>();
+        try
+        {
+            while (runs.size() > fanIn)
+            {
+                List<File> next = new ArrayList<>();
+                for (int x = 0; x < runs.size(); x += fanIn)
+                {
+                    List<File> group = runs.subList(x, Math.min(x + fanIn, runs.size()));
+                    if (group.size() == 1)
+                    {
+                        next.add(group.get(0));
+                        continue;
+                    }
+                    File merged = File.createTempFile("rangemap", ".run", tempDir);
+                    temps.add(merged);
+                    owned.add(merged);
+                    mergeGroup(group, merged);
+                    group.stream().filter(owned::contains).forEach(File::delete); // Free the disk space early
+                    next.add(merged);
+                }
+                runs = next;
+            }
+
+            mergeGroup(runs, output);
+        }
+        finally
+        {
+            temps.forEach(File::delete);
+        }
+    }
+
+    private void mergeGroup(List<File> inputs, File output) throws IOException
+    {
+        List<Source> sources = new ArrayList<>();
+        PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(1, inputs.size()), (a, b) -> {
+            int ret = ORDER.compare(a.current, b.current);
+            return ret != 0 ? ret : Integer.compare(a.index, b.index);
+        });
+
+        try (BufferedWriter writer = Files.newBufferedWriter(output.toPath(), charset))
+        {
+            for (File input : inputs)
+            {
+                Source src = new Source(input, sources.size(), Files.newBufferedReader(input.toPath(), charset));
+                sources.add(src);
+                if (src.next())
+                    queue.add(src);
+            }
+
+            String last = null;
+            while (!queue.isEmpty())
+            {
+                Source src = queue.poll();
+                if (!src.current.line.equals(last))
+                {
+                    writer.write(src.current.line);
+                    writer.newLine();
+                }
+                last = src.current.line;
+                if (src.next())
+                    queue.add(src);
+            }
+        }
+        finally
+        {
+            for (Source src : sources)
+                src.close();
+        }
+    }
+
+    private static class Record
+    {
+        private final String line;
+        private final String path;
+        private final int start;
+
+        private Record(String line, String path, int start)
+        {
+            this.line = line;
+            this.path = path;
+            this.start = start;
+        }
+
+        // Only range records, in the same format RangeMap reads: @|path|start|end|...
+        private static Record parse(String line)
+        {
+            line = line.trim();
+            if (!line.startsWith("@|"))
+                return null;
+            int pathEnd = line.indexOf('|', 2);
+            int startEnd = pathEnd == -1 ? -1 : line.indexOf('|', pathEnd + 1);
+            if (startEnd == -1)
+                throw new IllegalArgumentException("Invalid range line: " + line);
+            return new Record(line, line.substring(2, pathEnd), Integer.parseInt(line.substring(pathEnd + 1, startEnd)));
+        }
+    }
+
+    private static class Source implements Closeable
+    {
+        private final File file;
+        private final int index;
+        private final BufferedReader reader;
+        private Record current = null;
+
+        private Source(File file, int index, BufferedReader reader)
+        {
+            this.file = file;
+            this.index = index;
+            this.reader = reader;
+        }
+
+        private boolean next() throws IOException
+        {
+            Record prev = current;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                current = Record.parse(line);
+                if (current == null)
+                    continue;
+                if (prev != null && ORDER.compare(prev, current) > 0)
+                    throw new IllegalStateException("Range map is not sorted: " + file + " has " + current.line + " after " + prev.line);
+                return true;
+            }
+            current = null;
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package net.minecraftforge.srg2source.rangeapplier;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.minecraftforge.srg2source.ast.RangeExtractor;
+
+/**
+ * Extracts and applies in one go. Each file's ranges are handed straight from the extractor to the applier,
+ * instead of writing out the whole range map and reading it back in.
+ *
+ * Files are applied on a background thread while the extractor moves on, with at most {@link #setQueueSize(int)}
+ * files waiting, after which extraction waits for the applier to catch up. The range output of the extractor is
+ * optional, it is still written if set.
+ *
+ * The extractor closes its input when it is done, so the applier needs an input of its own, over the same sources.
+ */
+public class RangePipeline
+{
+    public static final int DEFAULT_QUEUE = 64;
+
+    private final RangeExtractor extractor;
+    private final RangeApplier applier;
+    private int queueSize = DEFAULT_QUEUE;
+
+    public RangePipeline(RangeExtractor extractor, RangeApplier applier)
+    {
+        this.extractor = extractor;
+        this.applier = applier;
+    }
+
+    /**
+     * How many extracted files may wait to be applied, before extraction is held up.
+     */
+    public void setQueueSize(int value)
+    {
+        if (value < 1)
+            throw new IllegalArgumentException("Queue size must be at least 1: " + value);
+        this.queueSize = value;
+    }
+
+    public boolean run() throws IOException
+    {
+        applier.validate();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Srg2Source Range Applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore slots = new Semaphore(queueSize);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        extractor.setFileListConsumer(applier::expect);
+        extractor.setRangeConsumer((path, ranges) -> {
+            if (error.get() != null)
+                return; // Already failed, let the extractor finish without us.
+            slots.acquireUninterruptibly();
+            executor.execute(() -> {
+                try
+                {
+                    if (error.get() == null)
+                        apply(path, ranges);
+                }
+                catch (Throwable e)
+                {
+                    error.compareAndSet(null, e);
+                }
+                finally
+                {
+                    slots.release();
+                }
+            });
+        });
+
+        boolean success = false;
+        try
+        {
+            boolean ret;
+            try
+            {
+                ret = extractor.run();
+            }
+            finally
+            {
+                extractor.setFileListConsumer(null);
+                extractor.setRangeConsumer(null);
+                executor.shutdown();
+                try
+                {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Throwable e = error.get();
+            if (e instanceof IOException)
+                throw (IOException)e;
+            if (e instanceof RuntimeException)
+                throw (RuntimeException)e;
+            if (e instanceof Error)
+                throw (Error)e;
+            if (e != null)
+                throw new RuntimeException(e);
+
+            success = true;
+            applier.finish();
+            return ret;
+        }
+        finally
+        {
+            if (!success)
+            {
+                try
+                {
+                    applier.finish(); // Still close the output, so it isn't left open.
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    // Already failing, the first error is the one that matters.
+                }
+            }
+        }
+    }
+
+    private void apply(String path, RangeMap range) throws IOException
+    {
+        // Same as reading a range map, files without anything to rename are not written.
+        FileRanges ranges = range.getRanges(path);
+        if (ranges != null)
+            applier.apply(path, ranges);
+        else
+            applier.skip(path);
+    }
+}
@@ -29,20 +29,25 @@ class RenameMap
      */
     public RenameMap readSrg(SrgContainer srgs)
     {
-        for (Entry<String, String> e : srgs.packageMap.entrySet()) // Packages
+        return readSrg(srgs.getMappings());
+    }
+
+    public RenameMap readSrg(Mappings srgs)
+    {
+        for (Entry<String, String> e : srgs.getPackages().entrySet()) // Packages
             maps.put("package " + e.getKey(), e.getValue());
 
-        for (Entry<String, String> e : srgs.classMap.entrySet()) // classes map
+        for (Entry<String, String> e : srgs.getClasses().entrySet()) // classes map
         {
             String replacedKey = e.getKey().replace('$', '/');
             maps.put("class " + replacedKey, e.getValue().replace('$', '.').replace('/', '.'));
             imports.put("class " + replacedKey, Util.internalName2Source(e.getValue()));
         }
 
-        for (Entry<String, String> e : srgs.fieldMap.entrySet()) // fields map
+        for (Entry<String, String> e : srgs.getFields().entrySet()) // fields map
             maps.put("field " + e.getKey().replace('$', '/'), Util.splitBaseName(e.getValue()).replace('$', '/'));
 
-        for (Entry<MethodData, MethodData> e : srgs.methodMap.entrySet()) // methods map
+        for (Entry<MethodData, MethodData> e : srgs.getMethods().entrySet()) // methods map
             maps.put("method " + e.getKey().name.replace('$', '/') + " " + e.getKey().sig, Util.splitBaseName(e.getValue().name).replace('$', '.'));
 
         return this;
@@ -74,8 +79,8 @@ class RenameMap
     public RenameMap readParamMap(SrgContainer srg, ExceptorFile exc)
     {
         //inverted stuff
-        BiMap<String, String> classMap = srg.classMap.inverse();
-        BiMap<MethodData, MethodData> methodMap = srg.methodMap.inverse();
+        BiMap<String, String> classMap = srg.getMappings().getClasses().inverse();
+        BiMap<MethodData, MethodData> methodMap = srg.getMappings().getMethods().inverse();
 
         BiMap<String, String> tmpClass = HashBiMap.create(classMap.size());
         for (Entry<String, String> e : classMap.entrySet())
@@ -132,8 +137,8 @@ class RenameMap
     public RenameMap readLocalVariableMap(LocalVarFile localVars, SrgContainer srg) throws IOException
     {
         //inverted stuff
-        BiMap<String, String> classMap = srg.classMap.inverse();
-        BiMap<MethodData, MethodData> methodMap = srg.methodMap.inverse();
+        BiMap<String, String> classMap = srg.getMappings().getClasses().inverse();
+        BiMap<MethodData, MethodData> methodMap = srg.getMappings().getMethods().inverse();
 
         String className;
         MethodData val;
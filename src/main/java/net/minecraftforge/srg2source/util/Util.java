@@ -8,17 +8,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Formatter;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
@@ -30,6 +38,7 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import de.siegmar.fastcsv.reader.CsvReader;
 import de.siegmar.fastcsv.reader.CsvRow;
+import net.minecraftforge.srg2source.util.io.FileGatherer;
 
 public class Util
 {
@@ -301,43 +310,12 @@ public class Util
      */
     public static String[] gatherFiles(String path, String filter, boolean relative)
     {
-        ArrayList<String> names = new ArrayList<String>();
-        for (File f : new File(path).listFiles())
-        {
-            if (f.isDirectory())
-            {
-                if (relative)
-                    names.addAll(gatherFiles(f.getAbsolutePath(), path.length()+1, filter));
-                else
-                    names.addAll(Arrays.asList(gatherFiles(f.getAbsolutePath(), filter, relative)));
-            }
-            else if (f.getName().endsWith(filter))
-            {
-                if (relative)
-                    names.add(f.getAbsolutePath().substring(path.length()+1).replace('\\', '/'));
-                else
-                    names.add(f.getAbsolutePath().replace('\\', '/'));
-            }
-        }
+        FileGatherer gatherer = new FileGatherer(new File(path)).suffix(filter);
+        List<String> names = relative ? gatherer.gather() : gatherer.gatherAbsolute();
         return names.toArray(new String[names.size()]);
     }
 
-    private static List<String> gatherFiles(String path, int cut, String filter)
-    {
-        ArrayList<String> names = new ArrayList<String>();
-        for (File f : new File(path).listFiles())
-        {
-            if (f.isDirectory())
-            {
-                names.addAll(gatherFiles(f.getPath(), cut, filter));
-            }
-            else if (f.getName().endsWith(filter))
-            {
-                names.add(f.getAbsolutePath().substring(cut).replace('\\', '/'));
-            }
-        }
-        return names;
-    }
+    private static final Map<String, Map<String, String>> COMPILER_OPTIONS = new ConcurrentHashMap<>();
 
     public static ASTParser createParser(String javaVersion, String srcRoot, String[] libs)
     {
@@ -353,15 +331,27 @@ public class Util
         return setOptions(parser, javaVersion);
     }
 
+    public static ASTParser createParser(String javaVersion, String[] libs, String[] sources)
+    {
+        ASTParser parser = ASTParser.newParser(AST.JLS10);
+        parser.setEnvironment(libs, sources, null, true);
+        return setOptions(parser, javaVersion);
+    }
+
     private static ASTParser setOptions(ASTParser parser, String javaVersion)
     {
         parser.setKind(ASTParser.K_COMPILATION_UNIT);
         parser.setResolveBindings(true);
         parser.setBindingsRecovery(true);
+        parser.setCompilerOptions(COMPILER_OPTIONS.computeIfAbsent(javaVersion, Util::getCompilerOptions)); // The parser takes a copy, so these can be shared.
+        return parser;
+    }
+
+    private static Map<String, String> getCompilerOptions(String javaVersion)
+    {
         Hashtable<String, String> options = JavaCore.getDefaultOptions();
         JavaCore.setComplianceOptions(javaVersion, options);
-        parser.setCompilerOptions(options);
-        return parser;
+        return Collections.unmodifiableMap(options);
     }
 
 
@@ -396,6 +386,83 @@ public class Util
         }
     }
 
+    /**
+     * Decodes the remaining bytes of a buffer into an exactly sized char array, leaving the buffer's position untouched.
+     * For UTF-8, ASCII and Latin-1 the leading ASCII run, which is usually the whole source file, is widened directly
+     * instead of going through a CharsetDecoder. Malformed input is replaced, the same as {@link String#String(byte[], Charset)}.
+     */
+    public static char[] decode(ByteBuffer buffer, Charset charset)
+    {
+        ByteBuffer buf = buffer.duplicate();
+        int len = buf.remaining();
+        boolean latin = StandardCharsets.ISO_8859_1.equals(charset);
+
+        if (latin || StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset))
+        {
+            char[] ret = new char[len];
+            int pos = buf.position();
+            int x = 0;
+            if (buf.hasArray())
+            {
+                byte[] data = buf.array();
+                int offset = buf.arrayOffset() + pos;
+                for (; x < len; x++)
+                {
+                    byte b = data[offset + x];
+                    if (b < 0 && !latin)
+                        break;
+                    ret[x] = (char)(b & 0xFF);
+                }
+            }
+            else
+            {
+                for (; x < len; x++)
+                {
+                    byte b = buf.get(pos + x);
+                    if (b < 0 && !latin)
+                        break;
+                    ret[x] = (char)(b & 0xFF);
+                }
+            }
+
+            if (x == len)
+                return ret;
+
+            // Not pure ASCII, decode the rest in place. These charsets never decode to more chars than there are bytes.
+            buf.position(pos + x);
+            CharBuffer out = CharBuffer.wrap(ret, x, len - x);
+            CharsetDecoder decoder = newDecoder(charset);
+            CoderResult result = decoder.decode(buf, out, true);
+            if (!result.isOverflow())
+                result = decoder.flush(out);
+            if (!result.isOverflow())
+                return out.position() == len ? ret : Arrays.copyOf(ret, out.position());
+
+            buf.position(pos);
+        }
+
+        try
+        {
+            CharBuffer chars = newDecoder(charset).decode(buf);
+            if (chars.hasArray() && chars.arrayOffset() == 0 && chars.remaining() == chars.array().length)
+                return chars.array();
+            char[] ret = new char[chars.remaining()];
+            chars.get(ret);
+            return ret;
+        }
+        catch (CharacterCodingException e)
+        {
+            throw new RuntimeException(e); // Can't happen, we replace bad input.
+        }
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset)
+    {
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
     public static String md5(String data, Charset encoding)
     {
         try
@@ -410,6 +477,23 @@ public class Util
         }
     }
 
+    public static String sha1(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[8192];
+            int cnt;
+            while ((cnt = in.read(buf)) > 0)
+                md.update(buf, 0, cnt);
+            return hex(md.digest());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static String hex(byte[] data)
     {
         return IntStream.range(0, data.length).collect(StringBuilder::new, (sb,i)->new Formatter(sb).format("%02x", data[i] & 0xFF), StringBuilder::append).toString();
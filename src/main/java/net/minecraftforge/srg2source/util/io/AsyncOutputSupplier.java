@@ -0,0 +1,194 @@
+package net.minecraftforge.srg2source.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Write-behind decorator for another {@link OutputSupplier}.
+ *
+ * Streams returned from {@link #getOutput(String)} buffer in memory, and are handed off to a single background
+ * thread when closed, which then writes them to the wrapped supplier in the order they were closed.
+ * The hand off queue is bounded, so closing a stream blocks while the writer is behind, keeping memory in check.
+ *
+ * Errors from the writer are rethrown from the next stream close, or from {@link #close()}, which also waits
+ * for all pending writes to finish before closing the wrapped supplier.
+ */
+public class AsyncOutputSupplier implements OutputSupplier
+{
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final Entry END = new Entry(null, null);
+
+    private final OutputSupplier delegate;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile Throwable error = null;
+    private boolean closed = false;
+
+    public AsyncOutputSupplier(OutputSupplier delegate)
+    {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public AsyncOutputSupplier(OutputSupplier delegate, int capacity)
+    {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "Srg2Source Output Writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public OutputStream getOutput(final String relPath)
+    {
+        if (closed)
+            throw new IllegalStateException("Can not get output from closed supplier: " + relPath);
+        if (error != null)
+            throw new IllegalStateException("Asynchronous output failed, refusing to write: " + relPath, error);
+
+        return new ByteArrayOutputStream()
+        {
+            private boolean done = false;
+
+            @Override
+            public void close() throws IOException
+            {
+                if (done)
+                    return;
+                done = true;
+                enqueue(new Entry(relPath, toByteArray()));
+            }
+        };
+    }
+
+    @Override
+    public void expect(Collection<String> relPaths)
+    {
+        delegate.expect(relPaths);
+    }
+
+    @Override
+    public void skip(String relPath)
+    {
+        delegate.skip(relPath);
+    }
+
+    private void enqueue(Entry entry) throws IOException
+    {
+        checkError();
+        try
+        {
+            queue.put(entry);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queuing output: " + entry.path);
+        }
+    }
+
+    private void checkError() throws IOException
+    {
+        Throwable err = error;
+        if (err == null)
+            return;
+        if (err instanceof IOException)
+            throw new IOException(err.getMessage(), err);
+        throw new IOException("Asynchronous output failed", err);
+    }
+
+    private void drain()
+    {
+        while (true)
+        {
+            Entry entry;
+            try
+            {
+                entry = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                error = e;
+                return;
+            }
+
+            if (entry == END)
+                return;
+
+            if (error != null)
+                continue; // Keep draining so producers never block on a dead writer.
+
+            try (OutputStream out = delegate.getOutput(entry.path))
+            {
+                if (out == null)
+                    throw new IOException("Could not get output stream for: " + entry.path);
+                out.write(entry.data);
+            }
+            catch (Throwable t)
+            {
+                error = t;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        boolean interrupted = false;
+        try
+        {
+            queue.put(END);
+        }
+        catch (InterruptedException e)
+        {
+            interrupted = true;
+        }
+
+        // The delegate can only be closed once the writer is done with it. If we are interrupted, stop the writer
+        // after its current entry, instead of waiting for everything still queued, but still wait for it.
+        while (true)
+        {
+            if (interrupted)
+                writer.interrupt();
+            try
+            {
+                writer.join();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        delegate.close();
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output to finish");
+        }
+        checkError();
+    }
+
+    private static class Entry
+    {
+        private final String path;
+        private final byte[] data;
+
+        private Entry(String path, byte[] data)
+        {
+            this.path = path;
+            this.data = data;
+        }
+    }
+}
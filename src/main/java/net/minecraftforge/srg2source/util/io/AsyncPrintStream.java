@@ -0,0 +1,178 @@
+package net.minecraftforge.srg2source.util.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A {@link PrintStream} that hands lines off to a background thread, which prints them to the wrapped stream.
+ * Meant for log output, so the hot loop only pays for queuing a reference rather than for console I/O.
+ *
+ * Lines are kept in a bounded ring buffer, and printing blocks while it is full, so nothing is ever dropped.
+ * {@link #flush()} waits until everything queued so far has been written. {@link #close()} flushes and stops
+ * the writer thread, but leaves the wrapped stream open, it usually is {@link System#out}.
+ */
+public class AsyncPrintStream extends PrintStream
+{
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final Object END = new Object();
+
+    private final PrintStream delegate;
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+    private final String newLine = System.lineSeparator();
+    private volatile boolean closed = false;
+
+    public AsyncPrintStream(PrintStream delegate)
+    {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public AsyncPrintStream(PrintStream delegate, int capacity)
+    {
+        super(new QueueOutputStream(), false);
+        ((QueueOutputStream)this.out).owner = this;
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "Srg2Source Log Writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // The common case, queue the string itself and let the writer thread deal with encoding it.
+    @Override
+    public void println(String x)
+    {
+        enqueue(x == null ? "null" + newLine : x + newLine);
+    }
+
+    @Override
+    public void println(Object x)
+    {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println()
+    {
+        enqueue(newLine);
+    }
+
+    @Override
+    public void print(String s)
+    {
+        enqueue(s == null ? "null" : s);
+    }
+
+    @Override
+    public void flush()
+    {
+        if (closed)
+            return;
+        CountDownLatch latch = new CountDownLatch(1);
+        enqueue(latch);
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed)
+            return;
+        flush();
+        closed = true;
+        enqueue(END);
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Object value)
+    {
+        if (closed && value != END)
+        {
+            write(value); // Too late to be asynchronous, but don't lose anything.
+            return;
+        }
+        try
+        {
+            queue.put(value);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            setError();
+        }
+    }
+
+    private void drain()
+    {
+        while (true)
+        {
+            Object value;
+            try
+            {
+                value = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            if (value == END)
+                return;
+            write(value);
+        }
+    }
+
+    private void write(Object value)
+    {
+        if (value instanceof String)
+            delegate.print((String)value);
+        else if (value instanceof byte[])
+        {
+            byte[] data = (byte[])value;
+            delegate.write(data, 0, data.length);
+        }
+        else if (value instanceof CountDownLatch)
+        {
+            delegate.flush();
+            ((CountDownLatch)value).countDown();
+        }
+    }
+
+    // Everything PrintStream writes as raw bytes ends up here, queued in order with the strings.
+    private static class QueueOutputStream extends OutputStream
+    {
+        private AsyncPrintStream owner;
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            owner.enqueue(new byte[] { (byte)b });
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            byte[] copy = new byte[len];
+            System.arraycopy(b, off, copy, 0, len);
+            owner.enqueue(copy);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package net.minecraftforge.srg2source.util.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -58,6 +59,19 @@ public class ChainedInputSupplier implements InputSupplier
         return ret;
     }
 
+    @Override
+    public ByteBuffer getBuffer(String resource) throws IOException
+    {
+        ByteBuffer ret = null;
+        for (InputSupplier child : children)
+        {
+            ret = child.getBuffer(resource);
+            if (ret != null)
+                break;
+        }
+        return ret;
+    }
+
     @Override
     public List<String> gatherAll(String endFilter)
     {
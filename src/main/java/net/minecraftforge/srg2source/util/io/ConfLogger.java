@@ -5,12 +5,59 @@ import java.io.PrintStream;
 @SuppressWarnings("rawtypes")
 public abstract class ConfLogger<T extends ConfLogger>
 {
+    public enum Level
+    {
+        DEBUG, // Per symbol detail, renames, imports, and the like.
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
     protected PrintStream logger = System.out;
     protected PrintStream errorLogger = System.err;
+    protected Level level = Level.DEBUG; // Everything, like it always was.
+    private boolean ownsLogger = false;
 
     protected void log(String s)
     {
-        logger.println(s);
+        log(Level.INFO, s);
+    }
+
+    protected void log(Level level, String s)
+    {
+        if (isLoggable(level))
+            logger.println(s);
+    }
+
+    /**
+     * Check this before building expensive messages in hot loops.
+     */
+    protected boolean isLoggable(Level level)
+    {
+        return level.ordinal() >= this.level.ordinal() && this.level != Level.OFF;
+    }
+
+    /**
+     * Waits for anything still buffered, in case the logger is asynchronous.
+     */
+    protected void flushLog()
+    {
+        logger.flush();
+        errorLogger.flush();
+    }
+
+    /**
+     * Flushes, and closes the logger if it was given to us to own, see {@link #setLogger(PrintStream, boolean)}.
+     */
+    protected void closeLog()
+    {
+        flushLog();
+        if (ownsLogger)
+        {
+            ownsLogger = false;
+            logger.close();
+        }
     }
 
     public PrintStream getLogger()
@@ -20,8 +67,18 @@ public abstract class ConfLogger<T extends ConfLogger>
 
     @SuppressWarnings("unchecked")
     public T setLogger(PrintStream value)
+    {
+        return setLogger(value, false);
+    }
+
+    /**
+     * @param owned Close the logger once done, for loggers created just for us, like an {@link AsyncPrintStream} and its thread.
+     */
+    @SuppressWarnings("unchecked")
+    public T setLogger(PrintStream value, boolean owned)
     {
         this.logger = value;
+        this.ownsLogger = owned;
         return (T) this;
     }
 
@@ -36,4 +93,16 @@ public abstract class ConfLogger<T extends ConfLogger>
         this.errorLogger = errorLogger;
         return (T) this;
     }
+
+    public Level getLevel()
+    {
+        return level;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setLevel(Level value)
+    {
+        this.level = value;
+        return (T) this;
+    }
 }
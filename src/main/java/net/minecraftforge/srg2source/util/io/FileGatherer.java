@@ -0,0 +1,174 @@
+package net.minecraftforge.srg2source.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Walks a directory tree in parallel, gathering the relative paths of every file that matches
+ * the configured suffix and include/exclude globs.
+ *
+ * Each directory is listed in its own fork/join task, so on high latency file systems (network mounts)
+ * the directory listings and attribute lookups overlap instead of running one after the other.
+ *
+ * Globs use the {@link FileSystem#getPathMatcher(String) glob syntax} and are matched against the path relative to the root.
+ * Excludes that match a directory prune its whole subtree.
+ */
+public class FileGatherer
+{
+    private final Path root;
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private String suffix = null;
+    private char separator = '/';
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public FileGatherer(File root)
+    {
+        this(root.toPath());
+    }
+
+    public FileGatherer(Path root)
+    {
+        this.root = root.toAbsolutePath();
+    }
+
+    public FileGatherer suffix(String value)
+    {
+        this.suffix = value;
+        return this;
+    }
+
+    public FileGatherer include(String glob)
+    {
+        this.includes.add(root.getFileSystem().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public FileGatherer exclude(String glob)
+    {
+        this.excludes.add(root.getFileSystem().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    /**
+     * The separator used in returned paths, '/' by default. Globs are always matched against '/' separated paths.
+     */
+    public FileGatherer separator(char value)
+    {
+        this.separator = value;
+        return this;
+    }
+
+    public FileGatherer pool(ForkJoinPool value)
+    {
+        this.pool = value;
+        return this;
+    }
+
+    /**
+     * @return The paths of all matching files, relative to the root and separated with the {@link #separator(char) separator}.
+     */
+    public List<String> gather()
+    {
+        if (!Files.isDirectory(root))
+            return new ArrayList<>();
+        List<String> ret = pool.invoke(new DirectoryTask(root, ""));
+        if (separator != '/')
+            ret.replaceAll(path -> path.replace('/', separator));
+        return ret;
+    }
+
+    /**
+     * @return The absolute paths of all matching files, separated with the {@link #separator(char) separator}.
+     */
+    public List<String> gatherAbsolute()
+    {
+        String prefix = root.toString().replace('\\', '/').replace('/', separator) + separator;
+        List<String> ret = gather();
+        for (int x = 0; x < ret.size(); x++)
+            ret.set(x, prefix + ret.get(x));
+        return ret;
+    }
+
+    private boolean matches(List<PathMatcher> matchers, Path relative)
+    {
+        for (PathMatcher matcher : matchers)
+        {
+            if (matcher.matches(relative))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean accept(String name, String relative)
+    {
+        if (suffix != null && !name.endsWith(suffix))
+            return false;
+        if (includes.isEmpty() && excludes.isEmpty())
+            return true;
+
+        Path path = root.getFileSystem().getPath(relative);
+        if (!includes.isEmpty() && !matches(includes, path))
+            return false;
+        return excludes.isEmpty() || !matches(excludes, path);
+    }
+
+    @SuppressWarnings("serial")
+    private class DirectoryTask extends RecursiveTask<List<String>>
+    {
+        private final Path dir;
+        private final String prefix;
+
+        private DirectoryTask(Path dir, String prefix)
+        {
+            this.dir = dir;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected List<String> compute()
+        {
+            List<String> ret = new ArrayList<>();
+            List<DirectoryTask> children = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir))
+            {
+                for (Path entry : stream)
+                {
+                    String name = entry.getFileName().toString();
+                    String relative = prefix + name;
+
+                    if (Files.isDirectory(entry))
+                    {
+                        if (excludes.isEmpty() || !matches(excludes, root.getFileSystem().getPath(relative)))
+                            children.add(new DirectoryTask(entry, relative + '/'));
+                    }
+                    else if (accept(name, relative))
+                        ret.add(relative);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Failed to list directory: " + dir, e);
+            }
+
+            if (!children.isEmpty())
+            {
+                invokeAll(children);
+                for (DirectoryTask child : children)
+                    ret.addAll(child.join());
+            }
+
+            return ret;
+        }
+    }
+}
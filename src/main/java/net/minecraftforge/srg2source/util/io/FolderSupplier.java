@@ -6,13 +6,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 public class FolderSupplier implements InputSupplier, OutputSupplier
 {
     private final File root;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private long mapThreshold = 1 << 20;
 
     public FolderSupplier(File root)
     {
@@ -23,6 +29,35 @@ public class FolderSupplier implements InputSupplier, OutputSupplier
         this.root = root;
     }
 
+    /**
+     * Only gather files whose path, relative to the root, matches this glob.
+     */
+    public FolderSupplier include(String glob)
+    {
+        this.includes.add(glob);
+        return this;
+    }
+
+    /**
+     * Skip files and directories whose path, relative to the root, matches this glob.
+     */
+    public FolderSupplier exclude(String glob)
+    {
+        this.excludes.add(glob);
+        return this;
+    }
+
+    /**
+     * Files at least this many bytes large are memory mapped by {@link #getBuffer(String)} instead of being read onto the heap.
+     * Mapped files stay open until the buffer is garbage collected, so use a negative value to disable mapping entirely
+     * if that is a problem, such as when the files need to be deleted right away on Windows.
+     */
+    public FolderSupplier setMapThreshold(long value)
+    {
+        this.mapThreshold = value;
+        return this;
+    }
+
     @Override
     public OutputStream getOutput(String relPath)
     {
@@ -56,26 +91,30 @@ public class FolderSupplier implements InputSupplier, OutputSupplier
     }
 
     @Override
-    public List<String> gatherAll(String endFilter)
+    public ByteBuffer getBuffer(String relPath) throws IOException
     {
-        LinkedList<String> out = new LinkedList<String>();
-        Stack<File> dirStack = new Stack<File>();
-        dirStack.push(root);
+        File file = new File(root, relPath);
+        if (!file.isFile())
+            return null;
 
-        int rootCut = root.getAbsolutePath().length() + 1; // +1 for the slash
+        long size = file.length();
+        if (mapThreshold < 0 || size < mapThreshold)
+            return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
 
-        while(dirStack.size() > 0)
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
         {
-            for (File f : dirStack.pop().listFiles())
-            {
-                if (f.isDirectory())
-                    dirStack.push(f);
-                else if (f.getPath().endsWith(endFilter))
-                    out.add(f.getAbsolutePath().substring(rootCut));
-            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
+    }
 
-        return out;
+    @Override
+    public List<String> gatherAll(String endFilter)
+    {
+        // Relative paths have always used the OS separator here, callers may match them against File paths.
+        FileGatherer gatherer = new FileGatherer(root).suffix(endFilter).separator(File.separatorChar);
+        includes.forEach(gatherer::include);
+        excludes.forEach(gatherer::exclude);
+        return gatherer.gather();
     }
 
     @Override
@@ -1,10 +1,14 @@
 package net.minecraftforge.srg2source.util.io;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.List;
 
+import net.minecraftforge.srg2source.util.Util;
+
 public interface InputSupplier extends Closeable
 {
     /**
@@ -23,6 +27,21 @@ public interface InputSupplier extends Closeable
      */
     InputStream getInput(String relPath);
 
+    /**
+     * Reads the entire contents of the specified resource into a buffer.
+     * The returned buffer may be shared or memory mapped, so it must be treated as read only.
+     * Returns null if the resource does not exist.
+     * @param relPath Reative path seperated with '/' and having no preceding slash.
+     * @return Buffer containing the entire resource
+     */
+    default ByteBuffer getBuffer(String relPath) throws IOException
+    {
+        try (InputStream stream = getInput(relPath))
+        {
+            return stream == null ? null : ByteBuffer.wrap(Util.readStream(stream));
+        }
+    }
+
     /**
      * Gathers all the names of all the resources with the given ending in their name.
      * These paths are gaurnateed to be relative. This will never reeturn null, and return an emtpy list instead.
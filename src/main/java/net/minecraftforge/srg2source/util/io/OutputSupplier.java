@@ -2,6 +2,7 @@ package net.minecraftforge.srg2source.util.io;
 
 import java.io.Closeable;
 import java.io.OutputStream;
+import java.util.Collection;
 
 public interface OutputSupplier extends Closeable
 {
@@ -11,4 +12,21 @@ public interface OutputSupplier extends Closeable
      * @return An output we can stream data to
      */
     public OutputStream getOutput(String relPath);
+
+    /**
+     * Hints at every path that is going to be written, before any are. Suppliers that care about
+     * the order of their entries can use this to plan ahead. Writing paths that were not expected is still allowed.
+     * @param relPaths Reative paths seperated with '/' and having no preceding slash.
+     */
+    default void expect(Collection<String> relPaths)
+    {
+    }
+
+    /**
+     * Tells the supplier that an expected path is not going to be written after all, so it doesn't wait for it.
+     * @param relPath Reative path seperated with '/' and having no preceding slash.
+     */
+    default void skip(String relPath)
+    {
+    }
 }
@@ -0,0 +1,187 @@
+package net.minecraftforge.srg2source.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import net.minecraftforge.srg2source.util.Util;
+
+/**
+ * Writes every output once into a content addressed store, keyed by the SHA-1 of its contents,
+ * and then materializes the requested folder layout by hard linking to the stored blob.
+ * If the file system does not support hard links between the store and the output folder, the blob is copied instead.
+ *
+ * Outputs that are already linked to the correct blob are left alone, so applying to a folder that
+ * shares most of its content with a previous run costs almost no disk I/O.
+ *
+ * Linked outputs share their data with the store, so they must be replaced rather than modified in place. To keep
+ * editors from doing that anyway, blobs are made read only. A blob that lost its read only bit, or its size, has
+ * been changed regardless, and is replaced rather than linked again. Blobs are never read back to check them.
+ * Files in the output folder that are not written by this run are left untouched.
+ */
+public class StoreOutputSupplier implements OutputSupplier
+{
+    private final Path store;
+    private final Path root;
+    private volatile boolean links = true;
+
+    public StoreOutputSupplier(File store, File root)
+    {
+        this.store = store.toPath().toAbsolutePath();
+        this.root = root.toPath().toAbsolutePath();
+    }
+
+    @Override
+    public OutputStream getOutput(final String relPath)
+    {
+        return new ByteArrayOutputStream()
+        {
+            private boolean done = false;
+
+            @Override
+            public void close() throws IOException
+            {
+                if (done)
+                    return;
+                done = true;
+                materialize(relPath, toByteArray());
+            }
+        };
+    }
+
+    private void materialize(String relPath, byte[] data) throws IOException
+    {
+        Path blob = store(data);
+        Path target = root.resolve(relPath);
+
+        if (Files.exists(target))
+        {
+            if (Files.isSameFile(target, blob) || isCopyOf(target, blob))
+                return;
+            delete(target);
+        }
+        else if (target.getParent() != null)
+            Files.createDirectories(target.getParent());
+
+        if (links)
+        {
+            try
+            {
+                Files.createLink(target, blob);
+                return;
+            }
+            catch (UnsupportedOperationException e)
+            {
+                links = false; // No link support at all, stop trying.
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                if (Files.isSameFile(target, blob))
+                    return; // Someone else linked it first.
+            }
+            catch (FileSystemException e)
+            {
+                // Different volumes won't ever link, anything else, like too many links to one blob, only affects this file.
+                if (!Files.getFileStore(store).equals(Files.getFileStore(target.getParent())))
+                    links = false;
+            }
+        }
+
+        // Copied with the blob's timestamp, which is how it is recognized next time without reading it.
+        Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        target.toFile().setWritable(true); // A copy is ours to edit, unlike the blob it came from.
+    }
+
+    private static boolean isCopyOf(Path target, Path blob) throws IOException
+    {
+        return Files.size(target) == Files.size(blob) && Files.getLastModifiedTime(target).equals(Files.getLastModifiedTime(blob));
+    }
+
+    // Editing a blob in place means making it writable first, which is what gives it away.
+    private static boolean isReadOnly(Path path) throws IOException
+    {
+        PosixFileAttributeView posix = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (posix != null)
+            return !posix.readAttributes().permissions().contains(PosixFilePermission.OWNER_WRITE);
+        DosFileAttributeView dos = Files.getFileAttributeView(path, DosFileAttributeView.class);
+        if (dos != null)
+            return dos.readAttributes().isReadOnly();
+        return !Files.isWritable(path);
+    }
+
+    // Read only files can't be deleted on Windows. That also unlocks any blob it's linked to, but blobs are checked before reuse.
+    private static void delete(Path target) throws IOException
+    {
+        try
+        {
+            Files.delete(target);
+        }
+        catch (AccessDeniedException e)
+        {
+            if (!target.toFile().setWritable(true))
+                throw e;
+            Files.delete(target);
+        }
+    }
+
+    private Path store(byte[] data) throws IOException
+    {
+        String hash = sha1(data);
+        Path blob = store.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+        if (Files.exists(blob))
+        {
+            if (Files.size(blob) == data.length && isReadOnly(blob))
+                return blob;
+            delete(blob); // Changed through one of its links, outputs still linked to it are replaced as they are written.
+        }
+
+        Files.createDirectories(blob.getParent());
+        Path tmp = Files.createTempFile(blob.getParent(), hash, ".tmp");
+        try
+        {
+            Files.write(tmp, data);
+            tmp.toFile().setReadOnly();
+            Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            // Someone else stored the same content first, which is just as good.
+        }
+        finally
+        {
+            if (Files.exists(tmp))
+                delete(tmp);
+        }
+        return blob;
+    }
+
+    private static String sha1(byte[] data)
+    {
+        try
+        {
+            return Util.hex(MessageDigest.getInstance("SHA-1").digest(data));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        // Everything is written as soon as each stream is closed.
+    }
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,6 +59,14 @@ public class ZipInputSupplier implements InputSupplier
         }
     }
 
+    @Override
+    public ByteBuffer getBuffer(String relPath)
+    {
+        byte[] ret = data.get(relPath);
+        // Not asReadOnlyBuffer, that hides the array and sends Util.decode down its slow path. Callers treat it as read only anyway.
+        return ret == null ? null : ByteBuffer.wrap(ret);
+    }
+
     @Override
     public List<String> gatherAll(String endFilter)
     {
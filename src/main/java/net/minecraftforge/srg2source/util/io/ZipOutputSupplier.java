@@ -1,17 +1,46 @@
 package net.minecraftforge.srg2source.util.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 public class ZipOutputSupplier implements OutputSupplier
 {
+    /**
+     * Fixed timestamp used for every entry in reproducible mode, the same one Gradle uses for reproducible archives.
+     * The DOS epoch itself is avoided because some tools treat it as 'no time'.
+     */
+    public static final long REPRODUCIBLE_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).getTimeInMillis();
+    public static final int DEFAULT_WINDOW = 64;
+
     private final ZipOutputStream zout;
     private EntryOutStream tempOut;
 
+    private int window = 0;
+    private final Object lock = new Object();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, Integer> order = new HashMap<>();
+    private final TreeMap<Integer, Entry> pending = new TreeMap<>();
+    private final TreeMap<String, byte[]> unexpected = new TreeMap<>();
+    private int next = 0;
+    private int open = 0;
+    private volatile Throwable error = null;
+
     public ZipOutputSupplier(File out) throws IOException
     {
         out = out.getAbsoluteFile(); //Make sure we know the parent or else getParentFile nulls
@@ -28,16 +57,110 @@ public class ZipOutputSupplier implements OutputSupplier
         zout = stream;
     }
 
+    /**
+     * Switches this supplier to reproducible mode, must be called before any output is requested.
+     *
+     * Entries are written in sorted name order with a fixed timestamp and compression level, so the same inputs
+     * always produce the same archive no matter how many threads write to it, or in what order they finish.
+     * Streams may then be used concurrently; each one buffers in memory and is handed over when closed.
+     *
+     * Entries announced through {@link #expect(Collection)} are streamed out as soon as every entry sorted before them is done.
+     * A finished entry more than {@code window} places ahead of the next one to write holds its producer back,
+     * as long as another producer is still working on an entry that could fill the gap.
+     * Entries that were not announced are kept in memory and written, sorted, after all the announced ones when closed.
+     * Announced entries that will never be written have to be reported through {@link #skip(String)}, or everything
+     * after them waits in memory until this is closed.
+     */
+    public ZipOutputSupplier reproducible(int window)
+    {
+        if (window <= 0)
+            throw new IllegalArgumentException("Reorder window must be positive: " + window);
+        this.window = window;
+        zout.setMethod(ZipOutputStream.DEFLATED);
+        zout.setLevel(Deflater.DEFAULT_COMPRESSION);
+        return this;
+    }
+
+    public ZipOutputSupplier reproducible()
+    {
+        return reproducible(DEFAULT_WINDOW);
+    }
+
+    @Override
+    public void expect(Collection<String> relPaths)
+    {
+        if (window <= 0)
+            return;
+
+        synchronized (lock)
+        {
+            if (!order.isEmpty() || next != 0)
+                throw new IllegalStateException("Expected outputs can only be set once, before anything is written");
+            for (String path : new TreeSet<>(relPaths))
+                order.put(path, order.size());
+        }
+    }
+
+    @Override
+    public void skip(String relPath)
+    {
+        if (window <= 0)
+            return;
+
+        synchronized (lock)
+        {
+            Integer index = order.get(relPath);
+            if (index == null || index < next || pending.containsKey(index))
+                return;
+            pending.put(index, new Entry(relPath, null));
+        }
+        drain();
+    }
+
     @Override
     public void close() throws IOException
     {
+        if (window > 0)
+        {
+            writeLock.lock();
+            try
+            {
+                synchronized (lock)
+                {
+                    // Anything expected that never showed up is simply skipped.
+                    for (Entry entry : pending.values())
+                    {
+                        if (entry.data != null)
+                            writeEntry(entry.path, entry.data);
+                    }
+                    pending.clear();
+                    for (Map.Entry<String, byte[]> entry : unexpected.entrySet())
+                        writeEntry(entry.getKey(), entry.getValue());
+                    unexpected.clear();
+                }
+            }
+            catch (IOException e)
+            {
+                if (error == null)
+                    error = e;
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+        }
+
         zout.flush();
         zout.close();
+        checkError();
     }
 
     @Override
     public OutputStream getOutput(String relPath)
     {
+        if (window > 0)
+            return getBufferedOutput(relPath);
+
         if (tempOut != null)
             throw new IllegalStateException("You must close the previous stream before getting a new one!");
 
@@ -53,6 +176,138 @@ public class ZipOutputSupplier implements OutputSupplier
         return new EntryOutStream();
     }
 
+    private OutputStream getBufferedOutput(final String relPath)
+    {
+        if (error != null)
+            return null;
+
+        synchronized (lock)
+        {
+            open++;
+        }
+
+        return new ByteArrayOutputStream()
+        {
+            private boolean done = false;
+
+            @Override
+            public void close() throws IOException
+            {
+                if (done)
+                    return;
+                done = true;
+                submit(relPath, toByteArray());
+            }
+        };
+    }
+
+    private void submit(String relPath, byte[] data) throws IOException
+    {
+        synchronized (lock)
+        {
+            open--;
+            lock.notifyAll();
+
+            Integer index = order.get(relPath);
+            if (index == null)
+            {
+                if (unexpected.putIfAbsent(relPath, data) != null)
+                    throw new ZipException("duplicate entry: " + relPath);
+            }
+            else
+            {
+                // Only wait if someone else is still working, otherwise nobody could ever fill the gap.
+                while (index >= next + window && open > 0 && error == null)
+                {
+                    try
+                    {
+                        lock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting to write: " + relPath);
+                    }
+                }
+                if (index < next || pending.containsKey(index))
+                    throw new ZipException("duplicate entry: " + relPath); // Same as ZipOutputStream would throw.
+                pending.put(index, new Entry(relPath, data));
+            }
+        }
+
+        drain();
+        checkError();
+    }
+
+    /**
+     * Writes every entry that is next in line. Only one thread writes at a time; anyone that can't get the write lock
+     * leaves their entry behind for the current writer, which checks again after letting go of the lock.
+     */
+    private void drain()
+    {
+        while (writeLock.tryLock())
+        {
+            try
+            {
+                Entry entry;
+                while ((entry = takeNext()) != null)
+                {
+                    if (entry.data != null) // Skipped
+                        writeEntry(entry.path, entry.data);
+                }
+            }
+            catch (IOException e)
+            {
+                if (error == null)
+                    error = e;
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+
+            synchronized (lock)
+            {
+                lock.notifyAll();
+                if (error != null || !pending.containsKey(next))
+                    return;
+            }
+        }
+    }
+
+    private Entry takeNext()
+    {
+        synchronized (lock)
+        {
+            Entry entry = pending.remove(next);
+            if (entry != null)
+            {
+                next++;
+                lock.notifyAll();
+            }
+            return entry;
+        }
+    }
+
+    private void writeEntry(String name, byte[] data) throws IOException
+    {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(REPRODUCIBLE_TIME);
+        zout.putNextEntry(entry);
+        zout.write(data);
+        zout.closeEntry();
+    }
+
+    private void checkError() throws IOException
+    {
+        Throwable err = error;
+        if (err == null)
+            return;
+        if (err instanceof IOException)
+            throw new IOException(err.getMessage(), err);
+        throw new IOException("Reproducible output failed", err);
+    }
+
     private class EntryOutStream extends OutputStream
     {
 
@@ -62,10 +317,28 @@ public class ZipOutputSupplier implements OutputSupplier
             zout.write(paramInt);
         }
 
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            zout.write(b, off, len);
+        }
+
         @Override
         public void close() throws IOException
         {
             zout.closeEntry();
         }
     }
+
+    private static class Entry
+    {
+        private final String path;
+        private final byte[] data;
+
+        private Entry(String path, byte[] data)
+        {
+            this.path = path;
+            this.data = data;
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package net.minecraftforge.srg2source.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("net.minecraftforge.srg2source.ApplyFile")
+@Label("Apply File")
+@Category({"Srg2Source", "Apply"})
+@Description("Applying a range map to a single source file")
+public class ApplyFileEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    public String path;
+
+    @Label("New Path")
+    public String newPath;
+
+    @Label("Length")
+    @Description("Length of the source in characters")
+    public int length;
+
+    @Label("Ranges")
+    public int ranges;
+
+    @Label("Renames")
+    public int renames;
+
+    @Label("Imports")
+    @Description("Imports the renamed code needed")
+    public int imports;
+}
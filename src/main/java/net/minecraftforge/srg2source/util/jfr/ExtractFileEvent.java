@@ -0,0 +1,45 @@
+package net.minecraftforge.srg2source.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("net.minecraftforge.srg2source.ExtractFile")
+@Label("Extract File")
+@Category({"Srg2Source", "Extract"})
+@Description("Range extraction of a single source file, in batch mode parsing happens before the event starts")
+public class ExtractFileEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    public String path;
+
+    @Label("Cached")
+    @Description("Ranges were replayed from the cache instead of parsing")
+    public boolean cached;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Records")
+    public long records;
+
+    @Label("Read Time")
+    @Timespan
+    public long readTime;
+
+    @Label("Parse Time")
+    @Timespan
+    public long parseTime;
+
+    @Label("Walk Time")
+    @Timespan
+    public long walkTime;
+
+    @Label("Emit Time")
+    @Timespan
+    public long emitTime;
+}
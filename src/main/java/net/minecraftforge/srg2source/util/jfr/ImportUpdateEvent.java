@@ -0,0 +1,28 @@
+package net.minecraftforge.srg2source.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("net.minecraftforge.srg2source.ImportUpdate")
+@Label("Import Update")
+@Category({"Srg2Source", "Apply"})
+@Description("Rewriting the import block of a single source file")
+public class ImportUpdateEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    public String path;
+
+    @Label("Requested")
+    @Description("Imports the renamed code needed")
+    public int requested;
+
+    @Label("Added")
+    @Description("Imports that were not already there, and had to be added")
+    public int added;
+
+    @Label("Length")
+    @Description("Length of the rewritten source in characters")
+    public int length;
+}
@@ -0,0 +1,151 @@
+package net.minecraftforge.srg2source.util.jfr;
+
+/**
+ * Entry point for our Flight Recorder events, safe to call on runtimes that don't have JFR.
+ *
+ * Each begin method returns an opaque event, or null when JFR is missing or that event is not being recorded,
+ * which is then passed to the matching commit method. The event classes themselves are only ever loaded through
+ * {@link Events}, so nothing touches {@code jdk.jfr} unless it is actually there.
+ *
+ * Set the {@code srg2source.jfr} system property to false to turn the events off entirely.
+ */
+public class JfrEvents
+{
+    public static final boolean AVAILABLE = isAvailable();
+
+    private static boolean isAvailable()
+    {
+        if (!Boolean.parseBoolean(System.getProperty("srg2source.jfr", "true")))
+            return false;
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    public static Object beginExtractFile()
+    {
+        return AVAILABLE ? Events.beginExtractFile() : null;
+    }
+
+    public static void commitExtractFile(Object event, String path, boolean cached, long bytes, long records, long readNanos, long parseNanos, long walkNanos, long emitNanos)
+    {
+        if (event != null)
+            Events.commitExtractFile(event, path, cached, bytes, records, readNanos, parseNanos, walkNanos, emitNanos);
+    }
+
+    public static Object beginApplyFile()
+    {
+        return AVAILABLE ? Events.beginApplyFile() : null;
+    }
+
+    public static void commitApplyFile(Object event, String path, String newPath, int length, int ranges, int renames, int imports)
+    {
+        if (event != null)
+            Events.commitApplyFile(event, path, newPath, length, ranges, renames, imports);
+    }
+
+    public static Object beginMappingLoad()
+    {
+        return AVAILABLE ? Events.beginMappingLoad() : null;
+    }
+
+    public static void commitMappingLoad(Object event, String path, int lines, int packages, int classes, int fields, int methods)
+    {
+        if (event != null)
+            Events.commitMappingLoad(event, path, lines, packages, classes, fields, methods);
+    }
+
+    public static Object beginImportUpdate()
+    {
+        return AVAILABLE ? Events.beginImportUpdate() : null;
+    }
+
+    public static void commitImportUpdate(Object event, String path, int requested, int added, int length)
+    {
+        if (event != null)
+            Events.commitImportUpdate(event, path, requested, added, length);
+    }
+
+    private static class Events
+    {
+        // Creating the events in here, rather than in the outer class, keeps the verifier from loading them early.
+        private static Object beginExtractFile() { return begin(new ExtractFileEvent());  }
+        private static Object beginApplyFile()   { return begin(new ApplyFileEvent());    }
+        private static Object beginMappingLoad() { return begin(new MappingLoadEvent());  }
+        private static Object beginImportUpdate(){ return begin(new ImportUpdateEvent()); }
+
+        private static Object begin(jdk.jfr.Event event)
+        {
+            if (!event.isEnabled())
+                return null;
+            event.begin();
+            return event;
+        }
+
+        private static void commitExtractFile(Object obj, String path, boolean cached, long bytes, long records, long readNanos, long parseNanos, long walkNanos, long emitNanos)
+        {
+            ExtractFileEvent event = (ExtractFileEvent)obj;
+            event.end();
+            if (!event.shouldCommit())
+                return;
+            event.path = path;
+            event.cached = cached;
+            event.bytes = bytes;
+            event.records = records;
+            event.readTime = readNanos;
+            event.parseTime = parseNanos;
+            event.walkTime = walkNanos;
+            event.emitTime = emitNanos;
+            event.commit();
+        }
+
+        private static void commitApplyFile(Object obj, String path, String newPath, int length, int ranges, int renames, int imports)
+        {
+            ApplyFileEvent event = (ApplyFileEvent)obj;
+            event.end();
+            if (!event.shouldCommit())
+                return;
+            event.path = path;
+            event.newPath = newPath;
+            event.length = length;
+            event.ranges = ranges;
+            event.renames = renames;
+            event.imports = imports;
+            event.commit();
+        }
+
+        private static void commitMappingLoad(Object obj, String path, int lines, int packages, int classes, int fields, int methods)
+        {
+            MappingLoadEvent event = (MappingLoadEvent)obj;
+            event.end();
+            if (!event.shouldCommit())
+                return;
+            event.path = path;
+            event.lines = lines;
+            event.packages = packages;
+            event.classes = classes;
+            event.fields = fields;
+            event.methods = methods;
+            event.commit();
+        }
+
+        private static void commitImportUpdate(Object obj, String path, int requested, int added, int length)
+        {
+            ImportUpdateEvent event = (ImportUpdateEvent)obj;
+            event.end();
+            if (!event.shouldCommit())
+                return;
+            event.path = path;
+            event.requested = requested;
+            event.added = added;
+            event.length = length;
+            event.commit();
+        }
+    }
+}
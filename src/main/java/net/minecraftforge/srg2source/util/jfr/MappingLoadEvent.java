@@ -0,0 +1,29 @@
+package net.minecraftforge.srg2source.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("net.minecraftforge.srg2source.MappingLoad")
+@Label("Mapping Load")
+@Category({"Srg2Source", "Mappings"})
+public class MappingLoadEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    public String path;
+
+    @Label("Lines")
+    public int lines;
+
+    @Label("Packages")
+    public int packages;
+
+    @Label("Classes")
+    public int classes;
+
+    @Label("Fields")
+    public int fields;
+
+    @Label("Methods")
+    public int methods;
+}
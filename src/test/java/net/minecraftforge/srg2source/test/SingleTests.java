@@ -4,23 +4,51 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import net.minecraftforge.srg2source.api.RangeExtractorBuilder;
 import net.minecraftforge.srg2source.api.SourceVersion;
+import net.minecraftforge.srg2source.ast.ExtractorMetrics;
 import net.minecraftforge.srg2source.ast.RangeExtractor;
+import net.minecraftforge.srg2source.ast.SrgFile;
+import net.minecraftforge.srg2source.rangeapplier.FileRanges;
+import net.minecraftforge.srg2source.rangeapplier.Mappings;
 import net.minecraftforge.srg2source.rangeapplier.RangeApplier;
+import net.minecraftforge.srg2source.rangeapplier.RangeMap;
+import net.minecraftforge.srg2source.rangeapplier.RangeMapDelta;
+import net.minecraftforge.srg2source.rangeapplier.RangeMapIndex;
+import net.minecraftforge.srg2source.rangeapplier.RangeMapSorter;
+import net.minecraftforge.srg2source.rangeapplier.SrgContainer;
+import net.minecraftforge.srg2source.rangeapplier.RangePipeline;
 import net.minecraftforge.srg2source.util.Util;
+import net.minecraftforge.srg2source.util.io.AsyncPrintStream;
+import net.minecraftforge.srg2source.util.io.FolderSupplier;
 
 public class SingleTests
 {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Test
     public void testGenerics() throws IOException
     {
@@ -71,6 +99,534 @@ public class SingleTests
         testClass("Whitespace", "core.package-info");
     }
 
+    @Test
+    public void testNewCode() throws IOException
+    {
+        testClass("NewCode", "NewCode", false, true);
+    }
+
+    @Test
+    public void testOwnerFilter() throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("GenericClasses", "GenericClasses"))
+            .output(new PrintWriter(bos))
+            .filterPrefix("GenericClasses.IFoo")
+            .build()
+            .run();
+
+        // Members of anything else are dropped, class references are always kept for the import handling.
+        StringBuilder expected = new StringBuilder();
+        for (String line : getFileContents("GenericClasses", "_ret.txt").split("\n", -1))
+        {
+            String[] pts = line.trim().split("\\|");
+            boolean member = pts.length > 6 && (pts[5].equals("method") || pts[5].equals("field") || pts[5].equals("param"));
+            if (!member || pts[6].startsWith("GenericClasses.IFoo"))
+                expected.append(line).append('\n');
+        }
+        expected.setLength(expected.length() - 1);
+
+        Assert.assertEquals(expected.toString(), bos.toString().replaceAll("\r?\n", "\n"));
+    }
+
+    @Test
+    public void testOwnerFilterSrg() throws IOException
+    {
+        File srg = temp.newFile("unrelated.srg");
+        Files.write(srg.toPath(), "CL: some/Other a\n".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("GenericClasses", "GenericClasses"))
+            .output(new PrintWriter(bos))
+            .filterSrg(srg)
+            .build()
+            .run();
+
+        // Exc and local variable maps can rename parameters and locals of classes the SRG doesn't list.
+        StringBuilder expected = new StringBuilder();
+        for (String line : getFileContents("GenericClasses", "_ret.txt").split("\n", -1))
+        {
+            String[] pts = line.trim().split("\\|");
+            if (!(pts.length > 6 && (pts[5].equals("method") || pts[5].equals("field"))))
+                expected.append(line).append('\n');
+        }
+        expected.setLength(expected.length() - 1);
+
+        String actual = bos.toString().replaceAll("\r?\n", "\n");
+        Assert.assertTrue(actual.contains("|param|"));
+        Assert.assertEquals(expected.toString(), actual);
+    }
+
+    @Test
+    public void testMetrics() throws IOException
+    {
+        int[] worked = new int[1];
+        RangeExtractor extractor = new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("GenericClasses", "GenericClasses"))
+            .output(new PrintWriter(new ByteArrayOutputStream()))
+            .metrics()
+            .progress(new NullProgressMonitor()
+            {
+                @Override
+                public void worked(int work)
+                {
+                    worked[0] += work;
+                }
+            })
+            .build();
+        extractor.run();
+
+        long records = Arrays.stream(getFileContents("GenericClasses", "_ret.txt").split("\n")).filter(l -> l.trim().startsWith("@")).count();
+
+        ExtractorMetrics metrics = extractor.getMetrics();
+        Assert.assertEquals(1, worked[0]);
+        Assert.assertEquals(1, metrics.getFiles().size());
+        Assert.assertEquals(records, metrics.getRecords());
+        Assert.assertTrue(metrics.getBytes() > 0);
+
+        StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+        Assert.assertTrue(json.toString().contains("\"path\": \"/GenericClasses.java\""));
+    }
+
+    @Test
+    public void testSharedParser() throws IOException
+    {
+        // Files in a folder on disk share one parser, which must not change what is extracted from them.
+        File root = temp.newFolder("src");
+        StringBuilder expected = new StringBuilder("Symbol range map extraction starting\nProcessing 2 files\n");
+        for (String name : new String[] { "AnonClass", "GenericClasses" })
+        {
+            Files.write(new File(root, name + ".java").toPath(), getFileContents(name, ".txt").getBytes(StandardCharsets.UTF_8));
+            String ret = getFileContents(name, "_ret.txt").replace("/" + name + ".java", name + ".java");
+            expected.append(ret.substring(ret.indexOf("startProcessing")));
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new FolderSupplier(root))
+            .output(new PrintWriter(bos))
+            .build()
+            .run();
+
+        Assert.assertEquals(expected.toString(), bos.toString().replaceAll("\r?\n", "\n"));
+    }
+
+    @Test
+    public void testAnnotatedPrimitive() throws IOException
+    {
+        // Type annotations on primitives reference classes too, and must be in the range map.
+        File root = temp.newFolder("annotated");
+        Files.write(new File(root, "TypeAnno.java").toPath(), (
+            "import java.lang.annotation.ElementType;\n" +
+            "import java.lang.annotation.Target;\n" +
+            "public class TypeAnno {\n" +
+            "    @Target(ElementType.TYPE_USE) @interface A {}\n" +
+            "    int[] arr = new @A int[3];\n" +
+            "    long cast(Object o) { return (@A long)(Integer)o; }\n" +
+            "}\n").getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new FolderSupplier(root))
+            .output(new PrintWriter(bos))
+            .build()
+            .run();
+
+        String out = bos.toString();
+        Assert.assertTrue(out, out.contains("@|TypeAnno.java|172|173|A|class|TypeAnno.A|false")); // new @A int[3]
+        Assert.assertTrue(out, out.contains("@|TypeAnno.java|217|218|A|class|TypeAnno.A|false")); // (@A long)
+    }
+
+    @Test
+    public void testAsyncLoggingClosed() throws IOException, URISyntaxException
+    {
+        // Writer threads of loggers made for a run must not outlive it, in a long lived host they would pile up.
+        long before = countLogWriters();
+        RangeExtractor extractor = new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("Whitespace", "core.package-info"))
+            .logger(new PrintStream(new ByteArrayOutputStream()))
+            .asyncLogging()
+            .build();
+        Assert.assertEquals(before + 1, countLogWriters());
+        Assert.assertTrue("Failed to do work!", extractor.run());
+        Assert.assertEquals(before, countLogWriters());
+
+        RangeApplier applier = new RangeApplier();
+        applier.readSrg(new File(getClass().getResource("/Whitespace_srg.txt").toURI()));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        applier.setLogger(new AsyncPrintStream(new PrintStream(bos)), true);
+        applier.setInput(new SimpleInputSupplier("Whitespace", "core.package-info"));
+        applier.setOutput(new MemoryOutputSupplier());
+        applier.readRangeMap(new File(getClass().getResource("/Whitespace_ret.txt").toURI()));
+        Assert.assertEquals(before + 1, countLogWriters());
+        applier.run();
+        Assert.assertEquals(before, countLogWriters());
+        Assert.assertTrue(bos.toString().contains("Processing 1 files"));
+    }
+
+    private static long countLogWriters()
+    {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.isAlive() && t.getName().equals("Srg2Source Log Writer")).count();
+    }
+
+    @Test
+    public void testPipeline() throws IOException, URISyntaxException
+    {
+        // Applying ranges straight from the extractor must give the same result as going through a range map.
+        RangeExtractor extractor = new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("Whitespace", "core.package-info"))
+            .build();
+
+        extractor.setMetrics(true); // No range output, records are still counted.
+
+        List<String> expected = new ArrayList<>();
+        boolean[] closed = new boolean[1];
+        MemoryOutputSupplier out = new MemoryOutputSupplier()
+        {
+            @Override
+            public void expect(Collection<String> relPaths)
+            {
+                expected.addAll(relPaths);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                closed[0] = true;
+            }
+        };
+        RangeApplier applier = new RangeApplier();
+        applier.readSrg(new File(getClass().getResource("/Whitespace_srg.txt").toURI()));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        applier.setLogger(new PrintStream(bos));
+        applier.setInput(new SimpleInputSupplier("Whitespace", "core.package-info"));
+        applier.setOutput(out);
+        applier.annotate(true);
+
+        Assert.assertTrue("Failed to do work!", new RangePipeline(extractor, applier).run());
+        Assert.assertEquals(getFileContents("Whitespace", "_maped.txt"), out.get(0));
+        Assert.assertEquals(1, expected.size());
+        Assert.assertTrue(closed[0]);
+        Assert.assertNotEquals(0, extractor.getMetrics().getRecords());
+
+        String log = getFileContents("Whitespace", "_maped_ret.txt");
+        Assert.assertEquals(log.substring(log.indexOf('\n') + 1), bos.toString().replaceAll("\r?\n", "\n")); // No file count up front
+    }
+
+    @Test
+    public void testRangeConsumer() throws IOException, URISyntaxException
+    {
+        // Ranges handed over without going through text must match the same ranges read from the range map.
+        for (String name : new String[] { "GenericClasses", "AnonClass", "Lambda" })
+        {
+            RangeExtractor extractor = new RangeExtractorBuilder()
+                .sourceCompatibility(SourceVersion.JAVA_1_8)
+                .input(new SimpleInputSupplier(name, name))
+                .build();
+
+            Map<String, RangeMap> ranges = new HashMap<>();
+            extractor.setRangeConsumer(ranges::put);
+            Assert.assertTrue("Failed to do work!", extractor.run());
+
+            RangeMap expected = new RangeMap(new File(getClass().getResource("/" + name + "_ret.txt").toURI()));
+            Assert.assertEquals(expected.keySet(), ranges.keySet());
+            Assert.assertEquals(dump(expected), dump(ranges.get("/" + name + ".java")));
+        }
+    }
+
+    @Test
+    public void testPipelineFailure() throws IOException, URISyntaxException
+    {
+        RangeExtractor extractor = new RangeExtractorBuilder()
+            .sourceCompatibility(SourceVersion.JAVA_1_8)
+            .input(new SimpleInputSupplier("Whitespace", "core.package-info"))
+            .build();
+
+        boolean[] closed = new boolean[1];
+        RangeApplier applier = new RangeApplier();
+        applier.setLogger(new PrintStream(new ByteArrayOutputStream()));
+        applier.setInput(new SimpleInputSupplier("Whitespace", "core.package-info"));
+        applier.setOutput(new MemoryOutputSupplier()
+        {
+            @Override
+            public OutputStream getOutput(String relPath)
+            {
+                throw new IllegalStateException("Disk full");
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                closed[0] = true;
+            }
+        });
+
+        try
+        {
+            new RangePipeline(extractor, applier).run();
+            Assert.fail("The apply error should be thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertEquals("Disk full", e.getMessage());
+        }
+        Assert.assertTrue("Output should be closed even when failing", closed[0]);
+    }
+
+    @Test
+    public void testRangeMapSorter() throws IOException, URISyntaxException
+    {
+        List<File> inputs = new ArrayList<>();
+        for (String name : new String[] { "GenericClasses", "AnonClass", "Whitespace" })
+            inputs.add(new File(getClass().getResource("/" + name + "_ret.txt").toURI()));
+
+        // Tiny runs and fan in, so every part of the sort is used.
+        File sorted = temp.newFile("sorted.txt");
+        new RangeMapSorter(temp.getRoot()).setRunSize(3).setFanIn(2).sort(inputs, sorted);
+
+        RangeMap expected = new RangeMap();
+        inputs.forEach(expected::read);
+        Assert.assertEquals(dump(expected), dump(new RangeMap(sorted)));
+
+        List<File> shards = new ArrayList<>();
+        for (File input : inputs)
+        {
+            File shard = temp.newFile();
+            new RangeMapSorter(temp.getRoot()).sort(Arrays.asList(input), shard);
+            shards.add(shard);
+        }
+        File merged = temp.newFile("merged.txt");
+        new RangeMapSorter(temp.getRoot()).setFanIn(2).merge(shards, merged);
+        Assert.assertEquals(new String(Files.readAllBytes(sorted.toPath())), new String(Files.readAllBytes(merged.toPath())));
+        Assert.assertEquals(2 + shards.size(), temp.getRoot().list().length); // No runs left behind
+    }
+
+    @Test
+    public void testRangeMapDelta() throws IOException
+    {
+        String generic = getSections("GenericClasses");
+        String anon = getSections("AnonClass");
+        String changed = anon.replace("|AnonClass|", "|AnonClassChanged|");
+        String added = getSections("Whitespace");
+
+        File base = temp.newFile("base.txt");
+        File target = temp.newFile("target.txt");
+        Files.write(base.toPath(), ("Processing 2 files\n" + generic + anon).getBytes(StandardCharsets.UTF_8));
+        Files.write(target.toPath(), ("Processing 3 files\n" + generic + changed + added).getBytes(StandardCharsets.UTF_8));
+
+        File delta = temp.newFile("delta.txt");
+        RangeMapDelta.diff(base, target, delta);
+        String text = new String(Files.readAllBytes(delta.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(RangeMapDelta.isDelta(delta));
+        Assert.assertTrue(text.contains("unchangedProcessing \"/GenericClasses.java\""));
+        Assert.assertFalse(text.contains("|GenericClasses|"));
+        Assert.assertTrue(text.contains(changed) && text.contains(added));
+
+        File applied = temp.newFile("applied.txt");
+        RangeMapDelta.apply(base, delta, applied);
+        Assert.assertEquals(new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8), new String(Files.readAllBytes(applied.toPath()), StandardCharsets.UTF_8).replaceAll("\r?\n", "\n"));
+    }
+
+    @Test
+    public void testRangeMapIndex() throws IOException
+    {
+        File map = temp.newFile("map.txt");
+        Files.write(map.toPath(), ("Processing 3 files\n" + getSections("AnonClass") + getSections("GenericClasses") + getSections("Whitespace")).getBytes(StandardCharsets.UTF_8));
+        File sorted = temp.newFile("sorted.txt");
+        new RangeMapSorter(temp.getRoot()).sort(Arrays.asList(map), sorted);
+
+        RangeMap full = new RangeMap(map);
+        for (File file : new File[] { map, sorted })
+        {
+            RangeMap partial = new RangeMap().read(file, Arrays.asList("/GenericClasses.java", "/Missing.java"));
+            Assert.assertEquals(Collections.singleton("/GenericClasses.java"), partial.keySet());
+            Assert.assertEquals(new ArrayList<>(full.get("/GenericClasses.java")), new ArrayList<>(partial.get("/GenericClasses.java")));
+            Assert.assertTrue(RangeMapIndex.getIndexFile(file).exists());
+        }
+        Assert.assertEquals(full.keySet(), RangeMapIndex.load(map).getPaths()); // From the saved index this time
+
+        // Same size and timestamp, but the sections moved, which the content check has to notice.
+        File swapped = temp.newFile("swapped.txt");
+        Files.write(swapped.toPath(), (getSections("AnonClass") + getSections("Whitespace")).getBytes(StandardCharsets.UTF_8));
+        long modified = swapped.lastModified();
+        RangeMapIndex.load(swapped);
+        Files.write(swapped.toPath(), (getSections("Whitespace") + getSections("AnonClass")).getBytes(StandardCharsets.UTF_8));
+        swapped.setLastModified(modified);
+        Assert.assertEquals(new ArrayList<>(full.get("/AnonClass.java")), new ArrayList<>(new RangeMap().read(swapped, Arrays.asList("/AnonClass.java")).get("/AnonClass.java")));
+
+        // Can't save the index, which is reported to the caller instead of failing the read.
+        File readOnly = temp.newFile("readonly.txt");
+        Files.write(readOnly.toPath(), getSections("AnonClass").getBytes(StandardCharsets.UTF_8));
+        RangeMapIndex.getIndexFile(readOnly).mkdirs();
+        List<String> warnings = new ArrayList<>();
+        Assert.assertEquals(full.keySet().contains("/AnonClass.java"), new RangeMap().read(readOnly, Arrays.asList("/AnonClass.java"), warnings::add).keySet().contains("/AnonClass.java"));
+        Assert.assertEquals(1, warnings.size());
+    }
+
+    @Test
+    public void testFileRanges()
+    {
+        RangeMap range = new RangeMap();
+        range.add("@|/A.java|20|23|Foo|class|a.Foo");
+        range.add("@|/A.java|5|8|Bar|class|a.Bar|true");
+        range.add("@|/A.java|20|23|Baz|class|a.Baz"); // Same start, the first one read wins
+        range.add("@|/A.java|10|13|Foo|class|a.Foo");
+
+        FileRanges ranges = range.getRanges("/A.java");
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertEquals(5, ranges.getStart(0));
+        Assert.assertTrue(ranges.isQualified(0));
+        Assert.assertEquals(10, ranges.getStart(1));
+        Assert.assertFalse(ranges.isQualified(1));
+        Assert.assertEquals("class a/Foo", ranges.getKey(2));
+        Assert.assertEquals(23, ranges.getEnd(2));
+        Assert.assertSame(ranges.getExpectedOldText(1), ranges.getExpectedOldText(2));
+        Assert.assertEquals(3, range.get("/A.java").size());
+        Assert.assertNull(range.getRanges("/B.java"));
+    }
+
+    @Test
+    public void testParallelRangeMap() throws IOException
+    {
+        File map = temp.newFile("map.txt");
+        Files.write(map.toPath(), ("Processing 3 files\n" + getSections("AnonClass") + getSections("GenericClasses") + getSections("Whitespace")).getBytes(StandardCharsets.UTF_8));
+
+        RangeMap expected = new RangeMap(map);
+        RangeMap chunked = new RangeMap().setParallelChunkSize(100).read(map);
+        Assert.assertEquals(dump(expected), dump(chunked));
+    }
+
+    @Test
+    public void testVerify() throws IOException, URISyntaxException
+    {
+        File srg = new File(getClass().getResource("/Whitespace_srg.txt").toURI());
+        File map = new File(getClass().getResource("/Whitespace_ret.txt").toURI());
+
+        RangeApplier good = new RangeApplier();
+        good.readSrg(srg);
+        good.setInput(new SimpleInputSupplier("Whitespace", "core.package-info"));
+        good.readRangeMap(map);
+        Assert.assertEquals(Collections.emptyList(), good.verify());
+
+        // Same map, different source, every range is off and nothing must be written.
+        RangeApplier stale = new RangeApplier();
+        stale.readSrg(srg);
+        stale.setLogger(new PrintStream(new ByteArrayOutputStream()));
+        stale.setInput(new SimpleInputSupplier("GenericClasses", "core.package-info"));
+        stale.setOutput(new MemoryOutputSupplier()
+        {
+            @Override
+            public OutputStream getOutput(String relPath)
+            {
+                throw new AssertionError("Wrote " + relPath + " from a stale map");
+            }
+        });
+        stale.setVerify(true);
+        stale.readRangeMap(map);
+        Assert.assertEquals(new RangeMap(map).get("/core/package-info.java").size(), stale.verify().size());
+        try
+        {
+            stale.run();
+            Assert.fail("Stale range map was applied");
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Range map does not match the sources"));
+        }
+    }
+
+    @Test
+    public void testSharedMappings() throws IOException
+    {
+        File file = temp.newFile("test.srg");
+        Files.write(file.toPath(), "PK: a b\nCL: a/A b/B\nFD: a/A/f b/B/g\nMD: a/A/m ()La/A; b/B/n ()Lb/B;\n".getBytes(StandardCharsets.UTF_8));
+
+        Mappings mappings = Mappings.load(file);
+        Assert.assertSame(mappings, Mappings.load(file));
+        SrgContainer container = new SrgContainer().readSrg(file);
+        Assert.assertSame(mappings, container.getMappings());
+        Assert.assertEquals(mappings.getClasses(), container.classMap);
+        Assert.assertEquals("a/A", container.classMap.inverse().get("b/B"));
+        container.classMap.put("a/C", "b/D"); // Copied on write, without touching the shared mappings
+        Assert.assertEquals("b/D", container.getMappings().getClasses().get("a/C"));
+        Assert.assertEquals(mappings.getFields(), container.getMappings().getFields());
+        Assert.assertFalse(mappings.getClasses().containsKey("a/C"));
+        Assert.assertFalse(new SrgContainer().readSrg(file).classMap.containsKey("a/C"));
+        Assert.assertEquals("a/A", mappings.getClasses().inverse().get("b/B"));
+        Assert.assertEquals(Arrays.asList("a/A/f"), mappings.getFieldsOf("a/A"));
+        Assert.assertEquals(Collections.emptyList(), mappings.getMethodsOf("b/B"));
+
+        SrgFile srg = new SrgFile(file).read();
+        Assert.assertEquals("g", srg.getClass("a/A").fields1.get("f").rename);
+        Assert.assertEquals("n", srg.getClass2("b/B").methods1.get("m()La/A;").rename);
+        Assert.assertNull(srg.getClass("a/Missing"));
+
+        // A later file is read on top, its CSRG members remapped through the classes already in the container.
+        File csrg = temp.newFile("test.csrg");
+        Files.write(csrg.toPath(), "a/A h i\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("b/B/i", container.readSrg(csrg).fieldMap.get("a/A/h"));
+        Assert.assertEquals("b/B/g", container.fieldMap.get("a/A/f"));
+
+        // A changed file replaces the cached one, and the cache can be turned off.
+        Files.write(file.toPath(), "CL: a/A c/C\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        Mappings changed = Mappings.load(file);
+        Assert.assertEquals("c/C", changed.getClasses().get("a/A"));
+        Assert.assertSame(changed, Mappings.load(file));
+        try
+        {
+            Mappings.setCacheEnabled(false);
+            Assert.assertNotSame(Mappings.load(file), Mappings.load(file));
+        }
+        finally
+        {
+            Mappings.setCacheEnabled(true);
+        }
+    }
+
+    @Test
+    public void testMappingsWithoutClasses() throws IOException
+    {
+        // Members moved to a new owner, without a CL line for the class itself.
+        File file = temp.newFile("members.srg");
+        Files.write(file.toPath(), "FD: a/A/f b/B/g\nMD: a/A/m ()V b/B/n ()V\n".getBytes(StandardCharsets.UTF_8));
+
+        Mappings mappings = Mappings.load(file);
+        Assert.assertEquals("a/A", mappings.getOriginalClass("b/B"));
+        Assert.assertNull(mappings.getOriginalClass("a/A"));
+
+        SrgFile srg = new SrgFile(file).read();
+        SrgFile.Class cls = srg.getClass2("b/B");
+        Assert.assertNotNull(cls);
+        Assert.assertEquals("a/A", cls.name);
+        Assert.assertEquals("f", cls.fields2.get("g").rename);
+        Assert.assertEquals("m", cls.methods2.get("n()V").rename);
+    }
+
+    private String getSections(String resource) throws IOException
+    {
+        String ret = getFileContents(resource, "_ret.txt");
+        return ret.substring(ret.indexOf("startProcessing"));
+    }
+
+    private static String dump(RangeMap range)
+    {
+        StringBuilder ret = new StringBuilder();
+        range.keySet().stream().sorted().forEach(key -> range.get(key).forEach(e -> ret.append(e).append('\n')));
+        return ret.toString();
+    }
+
     public void testClass(final String resource) throws IOException
     {
         testClass(resource, resource, false);
@@ -81,6 +637,11 @@ public class SingleTests
     }
 
     public void testClass(final String resource, final String clsName, boolean loadCache) throws IOException
+    {
+        testClass(resource, clsName, loadCache, false);
+    }
+
+    public void testClass(final String resource, final String clsName, boolean loadCache, boolean newCode) throws IOException
     {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
@@ -88,6 +649,7 @@ public class SingleTests
             .sourceCompatibility(SourceVersion.JAVA_1_8)
             .input(new SimpleInputSupplier(resource, clsName))
             .output(new PrintWriter(bos))
+            .newCodeRanges(newCode)
             .build();
 
 
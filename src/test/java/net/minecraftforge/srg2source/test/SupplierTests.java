@@ -0,0 +1,466 @@
+package net.minecraftforge.srg2source.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import net.minecraftforge.srg2source.api.RangeApplierBuilder;
+import net.minecraftforge.srg2source.ast.LibraryIndex;
+import net.minecraftforge.srg2source.ast.SupplierClasspath;
+import net.minecraftforge.srg2source.util.Util;
+import net.minecraftforge.srg2source.util.io.AsyncOutputSupplier;
+import net.minecraftforge.srg2source.util.io.AsyncPrintStream;
+import net.minecraftforge.srg2source.util.io.FileGatherer;
+import net.minecraftforge.srg2source.util.io.FolderSupplier;
+import net.minecraftforge.srg2source.util.io.OutputSupplier;
+import net.minecraftforge.srg2source.util.io.StoreOutputSupplier;
+import net.minecraftforge.srg2source.util.io.ZipOutputSupplier;
+
+public class SupplierTests
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private void touch(File root, String... paths) throws IOException
+    {
+        for (String path : paths)
+        {
+            File file = new File(root, path);
+            file.getParentFile().mkdirs();
+            file.createNewFile();
+        }
+    }
+
+    @Test
+    public void testFolderGather() throws IOException
+    {
+        File root = temp.newFolder("src");
+        touch(root, "a/A.java", "a/b/B.java", "a/b/c/C.java", "a/readme.txt", "gen/G.java", "a/gen/H.java", "Root.java");
+
+        List<String> all = new FolderSupplier(root).gatherAll(".java");
+        Collections.sort(all);
+        Assert.assertEquals(Arrays.asList("Root.java", "a/A.java", "a/b/B.java", "a/b/c/C.java", "a/gen/H.java", "gen/G.java"), all);
+
+        List<String> filtered = new FolderSupplier(root).include("a/**").exclude("**/gen").exclude("**/c/*.java").gatherAll(".java");
+        Collections.sort(filtered);
+        Assert.assertEquals(Arrays.asList("a/A.java", "a/b/B.java"), filtered);
+    }
+
+    @Test
+    public void testFolderGatherSeparator() throws IOException
+    {
+        File root = temp.newFolder("src");
+        touch(root, "a/A.java", "a/b/B.java", "gen/G.java");
+
+        // FolderSupplier keeps the OS separator, so its paths can be matched against File paths.
+        List<String> all = new FolderSupplier(root).exclude("gen").gatherAll(".java");
+        Collections.sort(all);
+        Assert.assertEquals(Arrays.asList("a" + File.separator + "A.java", "a" + File.separator + "b" + File.separator + "B.java"), all);
+        Assert.assertTrue(new File(root, all.get(1)).isFile());
+
+        // Globs still use '/', whatever the output separator is.
+        List<String> back = new FileGatherer(root).suffix(".java").include("a/**").separator('\\').gather();
+        Collections.sort(back);
+        Assert.assertEquals(Arrays.asList("a\\A.java", "a\\b\\B.java"), back);
+    }
+
+    @Test
+    public void testAsyncOutput() throws IOException
+    {
+        MemoryOutputSupplier mem = new MemoryOutputSupplier();
+        try (OutputSupplier out = new AsyncOutputSupplier(mem, 1))
+        {
+            for (int x = 0; x < 10; x++)
+            {
+                try (OutputStream os = out.getOutput("file" + x + ".java"))
+                {
+                    os.write(("data" + x).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        for (int x = 0; x < 10; x++)
+            Assert.assertEquals("data" + x, mem.get(x));
+    }
+
+    @Test(expected = IOException.class)
+    public void testAsyncOutputError() throws IOException
+    {
+        OutputSupplier broken = new OutputSupplier()
+        {
+            @Override public void close() throws IOException {}
+            @Override public OutputStream getOutput(String relPath) { return null; }
+        };
+
+        try (OutputSupplier out = new AsyncOutputSupplier(broken))
+        {
+            out.getOutput("Broken.java").close();
+        }
+    }
+
+    @Test
+    public void testAsyncOutputInterrupted() throws IOException, InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(false);
+        AtomicBoolean closedWhileWriting = new AtomicBoolean(false);
+        OutputSupplier slow = new OutputSupplier()
+        {
+            @Override
+            public void close() throws IOException
+            {
+                closedWhileWriting.set(writing.get());
+            }
+
+            @Override
+            public OutputStream getOutput(String relPath)
+            {
+                writing.set(true);
+                started.countDown();
+                Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+                return new ByteArrayOutputStream()
+                {
+                    @Override
+                    public void close()
+                    {
+                        writing.set(false);
+                    }
+                };
+            }
+        };
+
+        OutputSupplier out = new AsyncOutputSupplier(slow);
+        out.getOutput("Slow.java").close();
+        started.await();
+        Thread.currentThread().interrupt();
+        try
+        {
+            out.close();
+            Assert.fail("Close should report the interrupt");
+        }
+        catch (InterruptedIOException e)
+        {
+            Assert.assertTrue(Thread.interrupted());
+        }
+        Assert.assertFalse("Delegate closed while the writer was still using it", closedWhileWriting.get());
+    }
+
+    @Test
+    public void testFolderBuffer() throws IOException
+    {
+        File root = temp.newFolder("buffers");
+        String data = "class A { String s = \"\u00e9\u4e2d\ud83d\ude00\"; }\n";
+        Files.write(new File(root, "A.java").toPath(), data.getBytes(StandardCharsets.UTF_8));
+
+        for (long threshold : new long[] { -1, 0 })
+        {
+            ByteBuffer buf = new FolderSupplier(root).setMapThreshold(threshold).getBuffer("A.java");
+            Assert.assertEquals(data, new String(Util.decode(buf, StandardCharsets.UTF_8)));
+            Assert.assertEquals("Decode must not move the buffer", 0, buf.position());
+        }
+        Assert.assertNull(new FolderSupplier(root).getBuffer("Missing.java"));
+    }
+
+    @Test
+    public void testDecode()
+    {
+        String[] samples = { "", "plain ascii", "tr\u00e8s \u00e9t\u00e9", "\ud83d\ude00 emoji", "bad \uFFFD" };
+        for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII, StandardCharsets.UTF_16LE })
+        {
+            for (String sample : samples)
+            {
+                byte[] bytes = sample.getBytes(charset);
+                Assert.assertEquals(new String(bytes, charset), new String(Util.decode(ByteBuffer.wrap(bytes), charset)));
+            }
+        }
+
+        byte[] malformed = { 'a', (byte)0xC3, 'b', (byte)0xFF };
+        Assert.assertEquals(new String(malformed, StandardCharsets.UTF_8), new String(Util.decode(ByteBuffer.wrap(malformed), StandardCharsets.UTF_8)));
+    }
+
+    private void write(OutputSupplier out, String path, String data) throws IOException
+    {
+        try (OutputStream os = out.getOutput(path))
+        {
+            os.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testStoreOutput() throws IOException
+    {
+        File store = temp.newFolder("store");
+        File branchA = new File(temp.getRoot(), "branchA");
+        File branchB = new File(temp.getRoot(), "branchB");
+
+        try (OutputSupplier out = new StoreOutputSupplier(store, branchA))
+        {
+            write(out, "a/Same.java", "same");
+            write(out, "a/Changed.java", "before");
+        }
+        try (OutputSupplier out = new StoreOutputSupplier(store, branchB))
+        {
+            write(out, "a/Same.java", "same");
+            write(out, "a/Changed.java", "after");
+        }
+        try (OutputSupplier out = new StoreOutputSupplier(store, branchA))
+        {
+            write(out, "a/Changed.java", "again");
+        }
+
+        Assert.assertEquals("same", new String(Files.readAllBytes(new File(branchB, "a/Same.java").toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals("after", new String(Files.readAllBytes(new File(branchB, "a/Changed.java").toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals("again", new String(Files.readAllBytes(new File(branchA, "a/Changed.java").toPath()), StandardCharsets.UTF_8));
+        Assert.assertTrue(Files.isSameFile(new File(branchA, "a/Same.java").toPath(), new File(branchB, "a/Same.java").toPath()));
+        Path linked = new File(branchA, "a/Same.java").toPath();
+        if (Files.getFileStore(linked).supportsFileAttributeView("posix")) // canWrite is always true for root
+            Assert.assertFalse("Linked outputs should not be editable in place", Files.getPosixFilePermissions(linked).contains(PosixFilePermission.OWNER_WRITE));
+
+        // Edited in place anyway, which changes the blob, so it must not be trusted again.
+        File edited = new File(branchA, "a/Same.java");
+        edited.setWritable(true);
+        Files.write(edited.toPath(), "edit".getBytes(StandardCharsets.UTF_8));
+        try (OutputSupplier out = new StoreOutputSupplier(store, branchB))
+        {
+            write(out, "a/Same.java", "same");
+        }
+        Assert.assertEquals("same", new String(Files.readAllBytes(new File(branchB, "a/Same.java").toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStoreOutputZip() throws IOException
+    {
+        new RangeApplierBuilder().output(new File(temp.getRoot(), "out.zip")).outputStore(temp.newFolder("store")).range(temp.newFile("range.txt")).build();
+    }
+
+    private byte[] writeZip(File target, List<String> names, long seed) throws Exception
+    {
+        List<String> shuffled = new ArrayList<>(names);
+        Collections.shuffle(shuffled, new Random(seed));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (ZipOutputSupplier out = new ZipOutputSupplier(target).reproducible(4))
+        {
+            out.expect(names.subList(1, names.size())); // First name is left out, and has to end up last.
+            List<Future<?>> futures = new ArrayList<>();
+            for (String name : shuffled)
+                futures.add(pool.submit(() -> { write(out, name, "data " + name); return null; }));
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return Files.readAllBytes(target.toPath());
+    }
+
+    @Test
+    public void testReproducibleZip() throws Exception
+    {
+        List<String> names = new ArrayList<>();
+        for (int x = 0; x < 50; x++)
+            names.add(String.format("pkg%d/File%02d.java", x % 3, x));
+
+        byte[] first = writeZip(temp.newFile("first.zip"), names, 1);
+        byte[] second = writeZip(temp.newFile("second.zip"), names, 2);
+        Assert.assertArrayEquals(first, second);
+
+        List<String> expected = new ArrayList<>(names.subList(1, names.size()));
+        Collections.sort(expected);
+        expected.add(names.get(0));
+
+        List<String> actual = new ArrayList<>();
+        try (ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(first)))
+        {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null)
+            {
+                actual.add(entry.getName());
+                Assert.assertEquals(ZipOutputSupplier.REPRODUCIBLE_TIME, entry.getTime());
+            }
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testReproducibleZipSkip() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputSupplier out = new ZipOutputSupplier(new ZipOutputStream(bytes)).reproducible(1))
+        {
+            out.expect(Arrays.asList("A.java", "B.java", "C.java"));
+            write(out, "B.java", "b");
+            write(out, "C.java", "c");
+            Assert.assertEquals("Nothing can be written before A", 0, bytes.size());
+
+            out.skip("A.java");
+            Assert.assertNotEquals("Skipping A should release B and C", 0, bytes.size());
+
+            try
+            {
+                write(out, "C.java", "again");
+                Assert.fail("Duplicate entries should be rejected");
+            }
+            catch (ZipException e)
+            {
+                // Expected, same as a plain zip.
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncPrintStream() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder();
+        try (AsyncPrintStream out = new AsyncPrintStream(new PrintStream(bytes, false, "UTF-8"), 4))
+        {
+            for (int x = 0; x < 1000; x++)
+            {
+                out.println("Line " + x);
+                out.print(x);
+                out.println();
+                expected.append("Line ").append(x).append(System.lineSeparator()).append(x).append(System.lineSeparator());
+            }
+            out.flush();
+            Assert.assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLibraryIndex() throws Exception
+    {
+        ClassWriter cls = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cls.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "lib/Foo", null, "java/lang/Object", null);
+        MethodVisitor mtd = cls.visitMethod(Opcodes.ACC_PUBLIC, "bar", "()I", null, null);
+        mtd.visitCode();
+        mtd.visitInsn(Opcodes.ICONST_1);
+        mtd.visitInsn(Opcodes.IRETURN);
+        mtd.visitMaxs(0, 0);
+        mtd.visitEnd();
+        cls.visitEnd();
+
+        File jar = temp.newFile("lib.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar)))
+        {
+            out.putNextEntry(new ZipEntry("lib/Foo.class"));
+            out.write(cls.toByteArray());
+            out.putNextEntry(new ZipEntry("lib/data.txt"));
+            out.write("Not needed".getBytes(StandardCharsets.UTF_8));
+        }
+
+        File cache = temp.newFolder("cache");
+        File stripped = new LibraryIndex(cache).get(jar);
+        Assert.assertEquals(cache, stripped.getParentFile());
+        Assert.assertEquals(stripped, new LibraryIndex(cache).get(jar)); // Found again by hash in a new run
+
+        // Later runs trust the remembered hash while the size and timestamp match, instead of reading the whole jar.
+        File[] stamps = new File(cache, "stamps").listFiles();
+        Assert.assertEquals(1, stamps.length);
+        String stamp = new String(Files.readAllBytes(stamps[0].toPath()), StandardCharsets.UTF_8);
+        Files.write(stamps[0].toPath(), stamp.replaceAll("[0-9a-f]{40}$", "remembered").getBytes(StandardCharsets.UTF_8));
+        File remembered = new File(cache, "remembered-v1.jar");
+        Files.copy(stripped.toPath(), remembered.toPath());
+        Assert.assertEquals(remembered, new LibraryIndex(cache).get(jar));
+
+        jar.setLastModified(jar.lastModified() + 2000); // Touched, so it's hashed again.
+        Assert.assertEquals(stripped, new LibraryIndex(cache).get(jar));
+
+        try (ZipFile zip = new ZipFile(stripped))
+        {
+            Assert.assertEquals(1, zip.size());
+            boolean[] hasCode = new boolean[1];
+            new ClassReader(Util.readStream(zip.getInputStream(zip.getEntry("lib/Foo.class")))).accept(new ClassVisitor(Opcodes.ASM6)
+            {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
+                {
+                    Assert.assertEquals("bar", name);
+                    return new MethodVisitor(Opcodes.ASM6)
+                    {
+                        @Override
+                        public void visitCode()
+                        {
+                            hasCode[0] = true;
+                        }
+                    };
+                }
+            }, 0);
+            Assert.assertFalse(hasCode[0]);
+        }
+    }
+
+    @Test
+    public void testSupplierClasspath() throws IOException
+    {
+        File root = temp.newFolder("sourcepath");
+        touch(root, "pkg/sub/Foo.java", "pkg/sub/data.txt");
+        Files.write(new File(root, "pkg/sub/Foo.java").toPath(), "package pkg.sub; public class Foo {}".getBytes(StandardCharsets.UTF_8));
+
+        String path = SupplierClasspath.register(new FolderSupplier(root));
+        try
+        {
+            Assert.assertNull(SupplierClasspath.getClasspath(root.getAbsolutePath(), null, true, null, null, null, null));
+
+            FileSystem.Classpath cp = SupplierClasspath.getClasspath(path, null, true, null, null, null, null);
+            Assert.assertNotNull(cp);
+            cp.initialize();
+            Assert.assertTrue(cp.isPackage("pkg", null));
+            Assert.assertTrue(cp.isPackage("pkg/sub", null));
+            Assert.assertFalse(cp.isPackage("other", null));
+            Assert.assertTrue(cp.hasCompilationUnit("pkg/sub", null));
+            Assert.assertFalse(cp.hasCompilationUnit("pkg", null));
+
+            Assert.assertNull(cp.findClass("Bar".toCharArray(), "pkg/sub", null, "pkg/sub/Bar.class"));
+            NameEnvironmentAnswer answer = cp.findClass("Foo".toCharArray(), "pkg/sub", null, "pkg/sub/Foo.class");
+            Assert.assertNotNull(answer);
+            Assert.assertEquals("package pkg.sub; public class Foo {}", new String(answer.getCompilationUnit().getContents()));
+        }
+        finally
+        {
+            SupplierClasspath.unregister(path);
+        }
+        Assert.assertNull(SupplierClasspath.getClasspath(path, null, true, null, null, null, null));
+    }
+}